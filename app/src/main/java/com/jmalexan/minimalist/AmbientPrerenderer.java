@@ -0,0 +1,348 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.io.PrintWriter;
+
+/**
+ * Renders ambient frames one minute ahead on a background thread, so that the once-a-minute
+ * ambient wake only has to swap buffers and blit.
+ * <p>
+ * An ambient frame is white on black, so it is kept as an {@link Bitmap.Config#ALPHA_8} mask of
+ * the wedge and ticks and stamped onto black with a white paint. There are two masks: the front
+ * one holds the minute being shown and is only read on the main thread, the back one is written
+ * by the render thread. Both, and the minutes they hold, are guarded by a lock; the render thread
+ * draws into the back mask outside of it, which is safe because the main thread only swaps the
+ * masks once the back one is marked complete. The masks and tick lines are taken from the
+ * {@link SharedFaceCache} outside the lock too, as that may allocate, so the main thread never
+ * waits for more than a swap of references.
+ */
+final class AmbientPrerenderer {
+
+    /**
+     * Number of distinct ambient frames on the 12-hour dial.
+     */
+    static final int DIAL_MINUTES = WedgeGeometry.DIAL_SECONDS / 60;
+
+    /**
+     * Minute held by a mask whose contents are not usable.
+     */
+    private static final int NO_MINUTE = -1;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    /* Only used on the render thread. */
+    private final WedgeGeometry mGeometry = new WedgeGeometry();
+    private final WedgeRenderer mRenderer = new WedgeRenderer.PathRenderer();
+    private final float[] mVertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+    private final Canvas mCanvas = new Canvas();
+    private final TimingHistogram mRenderTimes = new TimingHistogram();
+
+    /* Renders mRequestedMinute. The only callback ever removed from mHandler. */
+    private final Runnable mRender = new Runnable() {
+        @Override
+        public void run() {
+            render();
+        }
+    };
+
+    private final Object mLock = new Object();
+    /* Configuration requested by the engine. Guarded by mLock. */
+    private int mWidth;
+    private int mHeight;
+    private boolean mRound;
+    private int mChinHeight;
+    private PaintSet mPaints;
+    /*
+     * The masks, the surface they were taken for, and the minute each holds. Guarded by mLock;
+     * only the render thread replaces the entry and the masks, so it may read them without it.
+     */
+    private SharedFaceCache.Entry mCacheEntry;
+    private Bitmap mFront;
+    private Bitmap mBack;
+    private int mBufferWidth;
+    private int mBufferHeight;
+    private boolean mBufferRound;
+    private int mFrontMinute = NO_MINUTE;
+    private int mBackMinute = NO_MINUTE;
+    private int mRequestedMinute = NO_MINUTE;
+    private long mSwaps;
+    private long mMisses;
+
+    AmbientPrerenderer() {
+        mThread = new HandlerThread("AmbientPrerenderer", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Returns the dial minute, from 0 to {@link #DIAL_MINUTES} - 1, that follows
+     * {@code dialMinute}.
+     */
+    static int nextMinute(int dialMinute) {
+        return (dialMinute + 1) % DIAL_MINUTES;
+    }
+
+    /**
+     * Sets the surface size and shape, and the paints frames are rendered with. Frames rendered
+     * with the previous configuration are dropped. Called on the main thread.
+     *
+     * @param chinHeight rows at the bottom of the surface that the screen does not show
+     */
+    void configure(int width, int height, boolean round, int chinHeight, PaintSet paints) {
+        mHandler.removeCallbacks(mRender);
+        synchronized (mLock) {
+            mWidth = width;
+            mHeight = height;
+            mRound = round;
+            mChinHeight = chinHeight;
+            mPaints = paints;
+            mFrontMinute = NO_MINUTE;
+            mBackMinute = NO_MINUTE;
+            mRequestedMinute = NO_MINUTE;
+        }
+    }
+
+    /**
+     * Starts rendering the frame of {@code dialMinute} into the back mask, replacing any frame
+     * that is pending or already there. Called on the main thread.
+     */
+    void request(int dialMinute) {
+        mHandler.removeCallbacks(mRender);
+        synchronized (mLock) {
+            mBackMinute = NO_MINUTE;
+            mRequestedMinute = dialMinute;
+        }
+        mHandler.post(mRender);
+    }
+
+    /**
+     * Drops a pending frame, e.g. when leaving ambient mode. A pending trim still runs. Called on
+     * the main thread.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mRender);
+        synchronized (mLock) {
+            mBackMinute = NO_MINUTE;
+            mRequestedMinute = NO_MINUTE;
+        }
+    }
+
+    /**
+     * Brings the frame of {@code dialMinute} to the front if the render thread has finished it.
+     * Called on the main thread.
+     *
+     * @return whether the front mask now holds {@code dialMinute}
+     */
+    boolean swap(int dialMinute) {
+        synchronized (mLock) {
+            if (mFrontMinute == dialMinute) {
+                return true;
+            }
+            if (mBackMinute != dialMinute) {
+                mMisses++;
+                return false;
+            }
+            Bitmap front = mFront;
+            mFront = mBack;
+            mBack = front;
+            mFrontMinute = dialMinute;
+            mBackMinute = NO_MINUTE;
+            mSwaps++;
+            return true;
+        }
+    }
+
+    /**
+     * Draws the frame of {@code dialMinute} onto black at the given offset, if it is in front.
+     * Called on the main thread.
+     *
+     * @param maskPaint paint whose color the mask is drawn in
+     * @return whether the frame was drawn
+     */
+    boolean draw(Canvas canvas, int dialMinute, int offsetX, int offsetY, Paint maskPaint) {
+        synchronized (mLock) {
+            if (mFrontMinute != dialMinute) {
+                return false;
+            }
+            canvas.drawColor(Color.BLACK);
+            canvas.drawBitmap(mFront, offsetX, offsetY, maskPaint);
+            return true;
+        }
+    }
+
+    /**
+     * Hands both masks back to the {@link SharedFaceCache} once pending work is done, and trims
+     * it to {@code tier}. The next request renders into masks taken again. Called on the main
+     * thread.
+     */
+    void trimMemory(final SharedFaceCache.Tier tier) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                releaseBuffers();
+                SharedFaceCache.getInstance().trim(tier);
+            }
+        });
+    }
+
+    /**
+     * Stops the render thread and hands both masks back once pending work is done.
+     */
+    void quit() {
+        mHandler.removeCallbacks(mRender);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                releaseBuffers();
+            }
+        });
+        mThread.quitSafely();
+    }
+
+    /**
+     * Renders the requested minute into the back mask. Runs on the render thread.
+     */
+    private void render() {
+        int dialMinute;
+        PaintSet paints;
+        int width;
+        int height;
+        boolean round;
+        int visibleHeight;
+        synchronized (mLock) {
+            dialMinute = mRequestedMinute;
+            if (dialMinute == NO_MINUTE || mWidth == 0 || mHeight == 0) {
+                return;
+            }
+            paints = mPaints;
+            width = mWidth;
+            height = mHeight;
+            round = mRound;
+            visibleHeight = mHeight - mChinHeight;
+        }
+
+        if (mBufferWidth != width || mBufferHeight != height || mBufferRound != round) {
+            SharedFaceCache.Entry entry =
+                    SharedFaceCache.getInstance().acquire(width, height, round);
+            Bitmap front = entry.obtainBitmap(Bitmap.Config.ALPHA_8);
+            Bitmap back = entry.obtainBitmap(Bitmap.Config.ALPHA_8);
+            SharedFaceCache.Entry oldEntry;
+            Bitmap oldFront;
+            Bitmap oldBack;
+            synchronized (mLock) {
+                oldEntry = mCacheEntry;
+                oldFront = mFront;
+                oldBack = mBack;
+                mCacheEntry = entry;
+                mFront = front;
+                mBack = back;
+                mBufferWidth = width;
+                mBufferHeight = height;
+                mBufferRound = round;
+                mFrontMinute = NO_MINUTE;
+            }
+            handBack(oldEntry, oldFront, oldBack);
+            mGeometry.setSurfaceSize(width, height);
+            mGeometry.setRound(round);
+        }
+        float[] tickLines = mCacheEntry.getTickLines();
+        synchronized (mLock) {
+            mCanvas.setBitmap(mBack);
+        }
+
+        long startNanos = System.nanoTime();
+        int vertexCount = mGeometry.computeWedge(
+                WedgeGeometry.hourStep(dialMinute / 60, dialMinute % 60, 0),
+                WedgeGeometry.minuteStep(dialMinute % 60, 0), mVertices);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mCanvas.save();
+        mCanvas.clipRect(0, 0, width, visibleHeight);
+        mRenderer.draw(mCanvas, mVertices, vertexCount, paints.getWedgePaint());
+        mCanvas.drawLines(tickLines, paints.getTickPaint());
+        mCanvas.restore();
+        mRenderTimes.record(System.nanoTime() - startNanos);
+
+        synchronized (mLock) {
+            if (dialMinute == mRequestedMinute) {
+                mBackMinute = dialMinute;
+            }
+        }
+    }
+
+    /**
+     * Hands both masks back to the {@link SharedFaceCache}. Runs on the render thread.
+     */
+    private void releaseBuffers() {
+        SharedFaceCache.Entry entry;
+        Bitmap front;
+        Bitmap back;
+        synchronized (mLock) {
+            entry = mCacheEntry;
+            front = mFront;
+            back = mBack;
+            mCacheEntry = null;
+            mFront = null;
+            mBack = null;
+            mBufferWidth = 0;
+            mBufferHeight = 0;
+            mFrontMinute = NO_MINUTE;
+            mBackMinute = NO_MINUTE;
+        }
+        mCanvas.setBitmap(null);
+        handBack(entry, front, back);
+    }
+
+    /**
+     * Returns masks that are no longer reachable from the main thread to their entry, if any.
+     */
+    private static void handBack(SharedFaceCache.Entry entry, Bitmap front, Bitmap back) {
+        if (entry == null) {
+            return;
+        }
+        entry.recycleBitmap(front);
+        entry.recycleBitmap(back);
+        SharedFaceCache.getInstance().release(entry);
+    }
+
+    /**
+     * Prints the buffer swaps, the ticks at which the next frame was not ready, and the render
+     * time of the frames.
+     */
+    void dump(PrintWriter writer, String prefix) {
+        synchronized (mLock) {
+            writer.print(prefix);
+            writer.print("ambient prerender: swaps=");
+            writer.print(mSwaps);
+            writer.print(" misses=");
+            writer.print(mMisses);
+            writer.print(" buffer bytes=");
+            writer.println(2L * mBufferWidth * mBufferHeight);
+        }
+        mRenderTimes.dump(writer, prefix, "ambient prerender");
+    }
+
+    /**
+     * Returns the number of frames rendered so far. From other threads it may be a frame out of
+     * date.
+     */
+    long getFrameCount() {
+        return mRenderTimes.getCount();
+    }
+
+    void resetStats() {
+        synchronized (mLock) {
+            mSwaps = 0;
+            mMisses = 0;
+        }
+        mRenderTimes.reset();
+    }
+}
@@ -0,0 +1,24 @@
+package com.jmalexan.minimalist;
+
+/**
+ * Source of wall-clock time. The engine reads the real clock through this interface; the day
+ * simulation test replaces it with one that follows Robolectric's scheduler, so that a day
+ * passes in seconds.
+ */
+interface Clock {
+
+    /**
+     * The real wall clock.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Returns the current time in milliseconds since the epoch.
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,308 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+
+import java.io.PrintWriter;
+
+/**
+ * Draws whole frames of the face from {@link FrameState} snapshots. It owns the geometry and the
+ * layer caches, and is only used on the {@link RenderThread}, so none of it needs
+ * synchronization. The wedge table, the tick lines and the layers' bitmaps come from the
+ * {@link SharedFaceCache}, which other engines use too. Layer keys are derived from the snapshot
+ * alone.
+ */
+final class FaceRenderer {
+
+    /**
+     * Distance, in pixels, the face is shifted each minute in ambient mode on screens that need
+     * burn-in protection.
+     */
+    private static final int BURN_IN_SHIFT_PX = 4;
+
+    /**
+     * Number of bits of a layer key taken by {@link #modeKey()}.
+     */
+    private static final int MODE_KEY_BITS = 3;
+
+    private final WedgeGeometry mGeometry = new WedgeGeometry();
+    /* Only used for its layer keys; the engine schedules updates with its own instance. */
+    private final RedrawScheduler mRedrawScheduler = new RedrawScheduler(mGeometry);
+    private final WedgeRenderer mPathRenderer = new WedgeRenderer.PathRenderer();
+    private final WedgeRenderer mVerticesRenderer = new WedgeRenderer.VerticesRenderer();
+    private WedgeRenderer mWedgeRenderer = mPathRenderer;
+    private final float[] mWedgeVertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+    /* Shared tables and bitmaps for the current surface; null until the first frame. */
+    private SharedFaceCache.Entry mCacheEntry;
+    /* Draws the low-bit mask onto the black frame. */
+    private final Paint mMaskPaint = new Paint();
+    private int mWidth;
+    private int mHeight;
+    private boolean mRound;
+    private int mChinHeight;
+    private PaintSet mLastPaints;
+
+    /* The frame being drawn, read by the layers below. */
+    private FrameState mState;
+    private int mHourStep;
+    private int mMinuteStep;
+
+    /*
+     * The filled wedge with the ticks drawn once on top. The ticks are XORed into the layer, so
+     * they stay opaque white where the layer is empty and cut holes, which show the black
+     * background, where the wedge is.
+     */
+    private final RenderLayer mWedgeLayer = new RenderLayer("wedge", Bitmap.Config.ARGB_8888) {
+        @Override
+        protected long computeKey() {
+            return wedgeKey();
+        }
+
+        @Override
+        protected void render(Canvas canvas) {
+            renderWedgeAndTicks(canvas);
+        }
+    };
+
+    /*
+     * The same wedge and ticks as a one-byte-per-pixel coverage mask, for low-bit ambient mode.
+     * Such screens only show black and white, so the face is drawn without anti-aliasing and the
+     * whole frame is this mask stamped onto black; the wedge layer is not used. It is only
+     * allocated on low-bit devices.
+     */
+    private final RenderLayer mLowBitMaskLayer =
+            new RenderLayer("low-bit mask", Bitmap.Config.ALPHA_8) {
+        @Override
+        protected long computeKey() {
+            return wedgeKey();
+        }
+
+        @Override
+        protected void render(Canvas canvas) {
+            renderWedgeAndTicks(canvas);
+        }
+    };
+    private boolean mLowBitMaskAllocated;
+
+    /* Render statistics, printed by Minimalist.dump(). */
+    private final TimingHistogram mInteractiveRenderTimes = new TimingHistogram();
+    private final TimingHistogram mAmbientRenderTimes = new TimingHistogram();
+
+    FaceRenderer() {
+        mMaskPaint.setColor(Color.WHITE);
+        mMaskPaint.setAntiAlias(false);
+        mMaskPaint.setFilterBitmap(false);
+    }
+
+    /**
+     * Returns the horizontal shift of the face in the given minute, for burn-in protection.
+     */
+    static int burnInOffsetX(int minute) {
+        return (minute % 9 % 3 - 1) * BURN_IN_SHIFT_PX;
+    }
+
+    /**
+     * Returns the vertical shift of the face in the given minute, for burn-in protection.
+     */
+    static int burnInOffsetY(int minute) {
+        return (minute % 9 / 3 - 1) * BURN_IN_SHIFT_PX;
+    }
+
+    /**
+     * Draws the frame for {@code state} onto {@code canvas}, which covers the whole surface.
+     * {@code state} is only read during the call, as it is recycled afterwards.
+     */
+    void render(FrameState state, Canvas canvas) {
+        long renderStartNanos = System.nanoTime();
+        configure(state);
+
+        mState = state;
+        mHourStep = WedgeGeometry.hourStep(state.mHour, state.mMinute, state.mSecond);
+        mMinuteStep = state.mSmooth
+                ? WedgeGeometry.minuteStep(state.mMinute, state.mSecond, state.mMillisecond)
+                : WedgeGeometry.minuteStep(state.mMinute, state.mSecond);
+
+        /*
+         * The layer is only rasterized again when its key changed; otherwise the frame is a fill
+         * and a blit. With burn-in protection the cached layer is moved around in ambient mode
+         * rather than redrawn.
+         */
+        int offsetX = 0;
+        int offsetY = 0;
+        if (state.isBurnInOutline()) {
+            offsetX = burnInOffsetX(state.mMinute);
+            offsetY = burnInOffsetY(state.mMinute);
+        }
+        RenderLayer layer = mWedgeLayer;
+        Paint layerPaint = null;
+        if (state.mAmbient && state.mLowBitAmbient) {
+            layer = mLowBitMaskLayer;
+            layerPaint = mMaskPaint;
+        }
+        layer.update();
+        canvas.drawColor(Color.BLACK);
+        canvas.drawBitmap(layer.getBitmap(), offsetX, offsetY, layerPaint);
+
+        mState = null;
+
+        long renderNanos = System.nanoTime() - renderStartNanos;
+        (state.mAmbient ? mAmbientRenderTimes : mInteractiveRenderTimes).record(renderNanos);
+    }
+
+    /**
+     * Brings the caches in line with the parts of {@code state} that are not covered by the
+     * layer keys: the surface size and shape, the paints and the wedge renderer.
+     */
+    private void configure(FrameState state) {
+        if (state.mWidth != mWidth || state.mHeight != mHeight || state.mRound != mRound) {
+            mWidth = state.mWidth;
+            mHeight = state.mHeight;
+            mRound = state.mRound;
+            mGeometry.setSurfaceSize(mWidth, mHeight);
+            mGeometry.setRound(mRound);
+            /* The bitmaps go back to the old entry before it is released. */
+            mWedgeLayer.release();
+            mLowBitMaskLayer.release();
+            mLowBitMaskAllocated = false;
+            SharedFaceCache.Entry entry =
+                    SharedFaceCache.getInstance().acquire(mWidth, mHeight, mRound);
+            releaseCacheEntry();
+            mCacheEntry = entry;
+            mWedgeLayer.setSize(mCacheEntry);
+        }
+        if (state.mChinHeight != mChinHeight) {
+            mChinHeight = state.mChinHeight;
+            mWedgeLayer.invalidate();
+            mLowBitMaskLayer.invalidate();
+        }
+        if (state.mLowBitAmbient != mLowBitMaskAllocated) {
+            if (state.mLowBitAmbient) {
+                mLowBitMaskLayer.setSize(mCacheEntry);
+            } else {
+                mLowBitMaskLayer.release();
+            }
+            mLowBitMaskAllocated = state.mLowBitAmbient;
+        }
+        if (state.mPaints != mLastPaints) {
+            mLastPaints = state.mPaints;
+            mWedgeLayer.invalidate();
+            mLowBitMaskLayer.invalidate();
+        }
+        WedgeRenderer renderer =
+                WedgeRenderer.VerticesRenderer.NAME.equals(state.mWedgeRendererName)
+                        ? mVerticesRenderer : mPathRenderer;
+        if (renderer != mWedgeRenderer) {
+            mWedgeRenderer = renderer;
+            mWedgeLayer.invalidate();
+            mLowBitMaskLayer.invalidate();
+        }
+    }
+
+    /**
+     * Returns the part of every layer key that depends on the display mode rather than the
+     * time. It takes {@link #MODE_KEY_BITS} bits.
+     */
+    private long modeKey() {
+        return (mState.isBurnInOutline() ? 4 : 0) | (mState.mAmbient ? 2 : 0)
+                | (mState.mMute ? 1 : 0);
+    }
+
+    /**
+     * Key of the wedge and ticks as drawn by {@link #renderWedgeAndTicks}.
+     */
+    private long wedgeKey() {
+        return (mRedrawScheduler.edgeKey(mHourStep, mMinuteStep) << MODE_KEY_BITS)
+                | modeKey();
+    }
+
+    /**
+     * Clears the canvas and draws the wedge with the ticks on top. The ticks are XORed in, so
+     * they come out where the canvas is empty and cut holes where the wedge is. Nothing is drawn
+     * into the chin, which the screen does not show.
+     */
+    private void renderWedgeAndTicks(Canvas canvas) {
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        canvas.save();
+        if (mChinHeight > 0) {
+            canvas.clipRect(0, 0, mWidth, mHeight - mChinHeight);
+        }
+        drawWedge(canvas);
+        canvas.drawLines(mCacheEntry.getTickLines(), mState.mPaints.getTickPaint());
+        canvas.restore();
+    }
+
+    /**
+     * Draws the wedge, intersecting the hand edges with the border, or, if the snapshot asks for
+     * it, reading the border points from the shared {@link WedgeTable} instead. The table costs
+     * about 340 KB per surface size and shape, shared by all engines, and is built on the first
+     * frame that needs it.
+     */
+    private void drawWedge(Canvas canvas) {
+        int vertexCount = mState.mUseWedgeTable
+                ? mCacheEntry.computeWedge(mHourStep, mMinuteStep, mWedgeVertices)
+                : mGeometry.computeWedge(mHourStep, mMinuteStep, mWedgeVertices);
+        PaintSet paints = mState.mPaints;
+        if (paints.isOutline()) {
+            /* Only the path renderer can stroke the outline. */
+            mPathRenderer.draw(canvas, mWedgeVertices, vertexCount, paints.getWedgePaint());
+        } else {
+            mWedgeRenderer.draw(canvas, mWedgeVertices, vertexCount, paints.getWedgePaint());
+        }
+    }
+
+    /**
+     * Hands every cache back to the {@link SharedFaceCache}. The next frame takes them again.
+     */
+    void release() {
+        mWedgeLayer.release();
+        mLowBitMaskLayer.release();
+        mLowBitMaskAllocated = false;
+        releaseCacheEntry();
+        mWidth = 0;
+        mHeight = 0;
+    }
+
+    private void releaseCacheEntry() {
+        if (mCacheEntry != null) {
+            SharedFaceCache.getInstance().release(mCacheEntry);
+            mCacheEntry = null;
+        }
+    }
+
+    /**
+     * Prints render time percentiles and the hit rate of every layer cache. Called from the
+     * dump thread; the counters may be a frame out of date.
+     */
+    void dumpStats(PrintWriter writer, String prefix) {
+        mInteractiveRenderTimes.dump(writer, prefix, "interactive render");
+        mAmbientRenderTimes.dump(writer, prefix, "ambient render");
+        dumpLayer(writer, prefix, mWedgeLayer);
+        if (mLowBitMaskAllocated) {
+            dumpLayer(writer, prefix, mLowBitMaskLayer);
+        }
+    }
+
+    private static void dumpLayer(PrintWriter writer, String prefix, RenderLayer layer) {
+        writer.print(prefix);
+        writer.print("layer ");
+        writer.print(layer.getName());
+        writer.print(": hits=");
+        writer.print(layer.getHits());
+        writer.print(" misses=");
+        writer.println(layer.getMisses());
+    }
+
+    long getFrameCount() {
+        return mInteractiveRenderTimes.getCount() + mAmbientRenderTimes.getCount();
+    }
+
+    void resetStats() {
+        mInteractiveRenderTimes.reset();
+        mAmbientRenderTimes.reset();
+        mWedgeLayer.resetCounters();
+        mLowBitMaskLayer.resetCounters();
+    }
+}
@@ -0,0 +1,139 @@
+package com.jmalexan.minimalist;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides, frame by frame, whether the smooth sweep may draw. It enforces two limits: a cap on
+ * the frame rate and a CPU budget, the share of one core that rendering and blitting may use.
+ * <p>
+ * The budget is a token bucket measured in nanoseconds of work. It refills at the budgeted
+ * share of elapsed time and holds at most {@link #BUCKET_WINDOW_NANOS} worth of budget, so short
+ * bursts are absorbed. Every frame is charged its measured cost. Once the bucket runs dry the
+ * governor reports the budget as exhausted until it has refilled halfway; in the meantime the
+ * engine falls back to the tick-paced path.
+ * <p>
+ * All methods run on the main thread; times are {@link System#nanoTime()} values.
+ */
+final class FrameBudgetGovernor {
+
+    static final int DEFAULT_MAX_FPS = 30;
+
+    /**
+     * Default share of one core the smooth sweep may use, in percent.
+     */
+    static final int DEFAULT_CPU_BUDGET_PERCENT = 5;
+
+    private static final long BUCKET_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private int mMaxFps = DEFAULT_MAX_FPS;
+    private int mCpuBudgetPercent = DEFAULT_CPU_BUDGET_PERCENT;
+    private long mMinFrameIntervalNanos;
+    private long mBalanceNanos;
+    private long mLastRefillNanos;
+    private long mLastFrameNanos;
+    private boolean mExhausted;
+
+    /* Statistics. */
+    private long mFrames;
+    private long mPacedFrames;
+    private long mExhaustions;
+
+    FrameBudgetGovernor() {
+        setLimits(DEFAULT_MAX_FPS, DEFAULT_CPU_BUDGET_PERCENT);
+    }
+
+    /**
+     * Sets the frame rate cap and the CPU budget. Both are clamped to sensible ranges, and the
+     * bucket starts over full.
+     */
+    void setLimits(int maxFps, int cpuBudgetPercent) {
+        mMaxFps = Math.max(1, Math.min(60, maxFps));
+        mCpuBudgetPercent = Math.max(1, Math.min(100, cpuBudgetPercent));
+        mMinFrameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / mMaxFps;
+        mBalanceNanos = capacityNanos();
+        mExhausted = false;
+    }
+
+    int getMaxFps() {
+        return mMaxFps;
+    }
+
+    int getCpuBudgetPercent() {
+        return mCpuBudgetPercent;
+    }
+
+    /**
+     * Returns whether the budget allows the smooth sweep to run at {@code nowNanos}.
+     */
+    boolean hasBudget(long nowNanos) {
+        refill(nowNanos);
+        if (mExhausted && mBalanceNanos >= capacityNanos() / 2) {
+            mExhausted = false;
+        }
+        return !mExhausted;
+    }
+
+    /**
+     * Returns whether a frame should be drawn for the vsync at {@code frameTimeNanos}, or skipped
+     * to stay under the frame rate cap.
+     */
+    boolean shouldDrawFrame(long frameTimeNanos) {
+        /* Allow a little jitter so that 30 fps on a 60 Hz display takes every other vsync. */
+        if (frameTimeNanos - mLastFrameNanos < mMinFrameIntervalNanos * 9 / 10) {
+            mPacedFrames++;
+            return false;
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mFrames++;
+        return true;
+    }
+
+    /**
+     * Charges {@code costNanos} of work done for the smooth sweep against the budget.
+     */
+    void charge(long costNanos) {
+        mBalanceNanos -= costNanos;
+        if (mBalanceNanos <= 0 && !mExhausted) {
+            mExhausted = true;
+            mExhaustions++;
+        }
+    }
+
+    private void refill(long nowNanos) {
+        if (mLastRefillNanos != 0) {
+            long elapsedNanos = nowNanos - mLastRefillNanos;
+            mBalanceNanos = Math.min(capacityNanos(),
+                    mBalanceNanos + elapsedNanos * mCpuBudgetPercent / 100);
+        }
+        mLastRefillNanos = nowNanos;
+    }
+
+    private long capacityNanos() {
+        return BUCKET_WINDOW_NANOS * mCpuBudgetPercent / 100;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.print("smooth sweep budget: max fps=");
+        writer.print(mMaxFps);
+        writer.print(" cpu=");
+        writer.print(mCpuBudgetPercent);
+        writer.print("% balance=");
+        writer.print(TimeUnit.NANOSECONDS.toMicros(mBalanceNanos));
+        writer.print("us");
+        writer.print(mExhausted ? " (exhausted)" : "");
+        writer.print(" frames=");
+        writer.print(mFrames);
+        writer.print(" paced=");
+        writer.print(mPacedFrames);
+        writer.print(" exhaustions=");
+        writer.println(mExhaustions);
+    }
+
+    void resetStats() {
+        mFrames = 0;
+        mPacedFrames = 0;
+        mExhaustions = 0;
+    }
+}
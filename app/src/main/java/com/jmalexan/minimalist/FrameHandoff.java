@@ -0,0 +1,147 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of rendered frames between the render thread, which produces them,
+ * and the main thread, which draws them onto the surface.
+ * <p>
+ * Each side owns one frame outright: the render thread its back frame, the main thread its
+ * front frame. The third frame sits in a shared slot, an atomic index that also carries a flag
+ * telling whether it holds a frame the main thread has not seen yet. Publishing and acquiring
+ * are a single atomic exchange each, so neither side ever waits for the other, and a frame is
+ * never written while it is being read.
+ * <p>
+ * The frames' bitmaps are taken from the {@link SharedFaceCache} like the layers', so that a
+ * re-created engine of the same size reuses them and they are counted and trimmed with the rest.
+ */
+final class FrameHandoff {
+
+    /**
+     * One rendered frame and a copy of the state it shows, as the published snapshot itself is
+     * recycled once the frame is drawn.
+     */
+    static final class Frame {
+        private final Canvas mCanvas = new Canvas();
+        private final FrameState mState = new FrameState();
+        /* The entry the bitmap was taken from; the frame holds a reference to it. */
+        private SharedFaceCache.Entry mEntry;
+        private Bitmap mBitmap;
+        private boolean mHasState;
+
+        /**
+         * Returns the state the frame was rendered for, or null if it holds nothing yet.
+         */
+        FrameState getState() {
+            return mHasState ? mState : null;
+        }
+
+        Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        /**
+         * Hands the bitmap back to its entry and drops the reference to the entry.
+         */
+        private void release() {
+            if (mBitmap != null) {
+                mCanvas.setBitmap(null);
+                mEntry.recycleBitmap(mBitmap);
+                SharedFaceCache.getInstance().release(mEntry);
+                mBitmap = null;
+                mEntry = null;
+            }
+            mHasState = false;
+        }
+    }
+
+    /**
+     * Set in the shared slot while it holds a frame the main thread has not acquired.
+     */
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = FRESH - 1;
+
+    private final Frame[] mFrames = {new Frame(), new Frame(), new Frame()};
+    private final AtomicInteger mShared = new AtomicInteger(1);
+    /* Only used on the render thread. */
+    private int mBack = 0;
+    /* Only used on the main thread. */
+    private int mFront = 2;
+
+    /**
+     * Returns a canvas on the back frame, sized for {@code state}, for the render thread to draw
+     * the frame of {@code state} into. Its previous contents are undefined, so the whole frame
+     * must be drawn.
+     */
+    Canvas beginFrame(FrameState state) {
+        Frame frame = mFrames[mBack];
+        Bitmap bitmap = frame.mBitmap;
+        if (bitmap == null || bitmap.getWidth() != state.mWidth
+                || bitmap.getHeight() != state.mHeight) {
+            frame.release();
+            frame.mEntry = SharedFaceCache.getInstance().acquire(state.mWidth, state.mHeight,
+                    state.mRound);
+            frame.mBitmap = frame.mEntry.obtainBitmap(Bitmap.Config.ARGB_8888);
+            frame.mCanvas.setBitmap(frame.mBitmap);
+        }
+        frame.mState.set(state);
+        frame.mHasState = true;
+        return frame.mCanvas;
+    }
+
+    /**
+     * Makes the back frame the latest one and takes over whichever frame was shared. Called on
+     * the render thread after drawing into the canvas from {@link #beginFrame}.
+     */
+    void publish() {
+        mBack = mShared.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the latest published frame, which stays valid until the next call. Called on the
+     * main thread.
+     */
+    Frame acquireLatest() {
+        if ((mShared.get() & FRESH) != 0) {
+            mFront = mShared.getAndSet(mFront) & INDEX_MASK;
+        }
+        return mFrames[mFront];
+    }
+
+    /**
+     * Hands the bitmap of the back frame back to the cache, and that of the shared one unless it
+     * holds a frame the main thread has not acquired yet. The front frame, which is on screen, is
+     * kept. The next frames that need the others take them again. Called on the render thread,
+     * under memory pressure.
+     */
+    void trimRenderSide() {
+        mFrames[mBack].release();
+        /*
+         * The main thread only takes the shared frame while it is fresh, and only this thread
+         * makes it fresh, so a stale one stays ours until the next publish().
+         */
+        int shared = mShared.get();
+        if ((shared & FRESH) == 0) {
+            mFrames[shared & INDEX_MASK].release();
+        }
+    }
+
+    /**
+     * Hands the back and the shared frame back to the cache. Called on the render thread once the
+     * main thread has stopped acquiring.
+     */
+    void releaseRenderSide() {
+        mFrames[mBack].release();
+        mFrames[mShared.get() & INDEX_MASK].release();
+    }
+
+    /**
+     * Hands the front frame back to the cache. Called on the main thread.
+     */
+    void releaseMainSide() {
+        mFrames[mFront].release();
+    }
+}
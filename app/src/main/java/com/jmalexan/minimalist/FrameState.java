@@ -0,0 +1,79 @@
+package com.jmalexan.minimalist;
+
+/**
+ * Everything a frame depends on, captured on the main thread and handed to the
+ * {@link RenderThread}. Snapshots are recycled through {@link RenderThread#obtainState()}
+ * rather than allocated per frame. A snapshot is only filled in before it is published and is
+ * not modified again until the render thread hands it back, so the render thread can read it
+ * without synchronization.
+ */
+final class FrameState {
+
+    /* Time shown by the frame, on the 12-hour dial. */
+    int mHour;
+    int mMinute;
+    int mSecond;
+    /* Only used by smooth frames; tick-paced frames show whole seconds. */
+    int mMillisecond;
+    boolean mSmooth;
+
+    /* Display mode. */
+    boolean mAmbient;
+    boolean mMute;
+    boolean mLowBitAmbient;
+    boolean mBurnInProtection;
+    PaintSet mPaints;
+    String mWedgeRendererName;
+    /* Whether the wedge is read from the shared WedgeTable rather than computed. */
+    boolean mUseWedgeTable;
+
+    /* Surface the frame is drawn for. */
+    int mWidth;
+    int mHeight;
+    boolean mRound;
+    /* Rows at the bottom of the surface that the screen does not show. */
+    int mChinHeight;
+
+    void set(int hour, int minute, int second, int millisecond, boolean smooth,
+            boolean ambient, boolean mute, boolean lowBitAmbient, boolean burnInProtection,
+            PaintSet paints, String wedgeRendererName, boolean useWedgeTable, int width,
+            int height, boolean round, int chinHeight) {
+        mHour = hour;
+        mMinute = minute;
+        mSecond = second;
+        mMillisecond = millisecond;
+        mSmooth = smooth;
+        mAmbient = ambient;
+        mMute = mute;
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+        mPaints = paints;
+        mWedgeRendererName = wedgeRendererName;
+        mUseWedgeTable = useWedgeTable;
+        mWidth = width;
+        mHeight = height;
+        mRound = round;
+        mChinHeight = chinHeight;
+    }
+
+    void set(FrameState other) {
+        set(other.mHour, other.mMinute, other.mSecond, other.mMillisecond, other.mSmooth,
+                other.mAmbient, other.mMute, other.mLowBitAmbient, other.mBurnInProtection,
+                other.mPaints, other.mWedgeRendererName, other.mUseWedgeTable, other.mWidth,
+                other.mHeight, other.mRound, other.mChinHeight);
+    }
+
+    /**
+     * Returns the minute on the 12-hour dial, as used by {@link AmbientPrerenderer}.
+     */
+    int getDialMinute() {
+        return mHour * 60 + mMinute;
+    }
+
+    /**
+     * Returns whether the wedge is drawn as an outline to protect the screen from burn-in.
+     */
+    boolean isBurnInOutline() {
+        return mAmbient && mBurnInProtection;
+    }
+}
@@ -1,25 +1,37 @@
 package com.jmalexan.minimalist;
 
+import android.Manifest;
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Rect;
+import android.os.BatteryManager;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
+import android.view.WindowInsets;
 
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import static android.support.wearable.watchface.WatchFaceStyle.PROTECT_STATUS_BAR;
@@ -39,8 +51,9 @@ import static android.support.wearable.watchface.WatchFaceStyle.PROTECT_STATUS_B
 public class Minimalist extends CanvasWatchFaceService {
 
     /*
-     * Updates rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Updates rate in milliseconds for interactive mode. The edges only move once a second, so
+     * this is the shortest interval between updates; {@link RedrawScheduler} skips the seconds
+     * in which nothing visible changes.
      */
     private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
 
@@ -49,9 +62,142 @@ public class Minimalist extends CanvasWatchFaceService {
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Broadcast that changes the debug settings of every engine, e.g.
+     * {@code adb shell am broadcast -a com.jmalexan.minimalist.action.DEBUG --es renderer path}.
+     * Only senders holding the DUMP permission, such as the shell, are accepted.
+     */
+    private static final String ACTION_DEBUG = "com.jmalexan.minimalist.action.DEBUG";
+
+    /**
+     * String extra of {@link #ACTION_DEBUG} that selects the wedge renderer by name.
+     */
+    private static final String EXTRA_RENDERER = "renderer";
+
+    /**
+     * Boolean extra of {@link #ACTION_DEBUG} that reads the wedge from a precomputed table
+     * instead of computing it every frame.
+     */
+    private static final String EXTRA_WEDGE_TABLE = "wedge_table";
+
+    /**
+     * Boolean extra of {@link #ACTION_DEBUG} that benchmarks the wedge renderers against each
+     * other in the background. The next dump prints the results.
+     */
+    private static final String EXTRA_COMPARE_RENDERERS = "compare_renderers";
+
+    /**
+     * Boolean extra of {@link #ACTION_DEBUG} that turns the smooth sweep on or off.
+     */
+    private static final String EXTRA_SMOOTH = "smooth";
+
+    /**
+     * Int extra of {@link #ACTION_DEBUG} that caps the smooth sweep's frame rate.
+     */
+    private static final String EXTRA_SMOOTH_FPS = "smooth_fps";
+
+    /**
+     * Int extra of {@link #ACTION_DEBUG} that sets the smooth sweep's CPU budget in percent of
+     * one core.
+     */
+    private static final String EXTRA_SMOOTH_BUDGET = "smooth_budget";
+
+    /**
+     * Boolean extra of {@link #ACTION_DEBUG} that clears the timing statistics.
+     */
+    private static final String EXTRA_RESET_STATS = "reset_stats";
+
+    /**
+     * How long before the screen times out the smooth sweep gives way to the tick-paced path,
+     * so that the dim transition does not cost a burst of frames nobody looks at.
+     */
+    private static final long DIM_WARNING_MS = TimeUnit.SECONDS.toMillis(2);
+
+    /**
+     * Screen timeout assumed when the setting cannot be read.
+     */
+    private static final int DEFAULT_SCREEN_OFF_TIMEOUT_MS = 15000;
+
+    /*
+     * Live engines, for dump(). A preview and the active face can exist at the same time, and
+     * dump() runs on a binder thread, hence the copy-on-write list.
+     */
+    private final List<Engine> mEngines = new CopyOnWriteArrayList<>();
+
+    /* Wall-clock time source of every engine. Main thread only. */
+    private Clock mClock = Clock.SYSTEM;
+
     @Override
     public Engine onCreateEngine() {
-        return new Engine();
+        Engine engine = new Engine();
+        mEngines.add(engine);
+        return engine;
+    }
+
+    /**
+     * Replaces the wall-clock time source of every engine, e.g. with a simulated one in tests.
+     * Called on the main thread.
+     */
+    void setClock(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Gives up cached memory tier by tier as pressure rises: the wedge tables first, then the
+     * layer bitmaps of every engine, then the tick lines. Each is rebuilt by the next frame that
+     * needs it.
+     * <p>
+     * The levels are not ordered by pressure alone, so each is mapped on its own. Those sent
+     * while the process runs follow the device's memory; those sent once it is cached follow
+     * how close it is to being killed, where giving up more only helps it survive.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        SharedFaceCache.Tier tier;
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+                tier = SharedFaceCache.Tier.TABLES;
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+            case ComponentCallbacks2.TRIM_MEMORY_BACKGROUND:
+                tier = SharedFaceCache.Tier.LAYER_BITMAPS;
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+            case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                tier = SharedFaceCache.Tier.TICKS;
+                break;
+            default:
+                /*
+                 * Including TRIM_MEMORY_UI_HIDDEN: the face has no UI of its own to hide, and the
+                 * wallpaper stays visible.
+                 */
+                return;
+        }
+        SharedFaceCache.getInstance().recordTrim();
+        if (tier.compareTo(SharedFaceCache.Tier.LAYER_BITMAPS) >= 0) {
+            for (Engine engine : mEngines) {
+                engine.trimMemory(tier);
+            }
+        }
+        /* Entries no engine holds are only trimmed here. This never waits for a table build. */
+        SharedFaceCache.getInstance().trim(tier);
+    }
+
+    /**
+     * Prints the shared cache and the render statistics of every live engine, after the
+     * wallpaper service's own state.
+     * Run {@code adb shell dumpsys activity service com.jmalexan.minimalist} to see it. It only
+     * reports; settings are changed through {@link #ACTION_DEBUG}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        SharedFaceCache.getInstance().dump(writer, "  ");
+        for (Engine engine : mEngines) {
+            engine.dumpStats(writer, "  ");
+        }
     }
 
     private static class EngineHandler extends Handler {
@@ -77,22 +223,126 @@ public class Minimalist extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine {
         /* Handler to update the time once a second in interactive mode. */
         private final Handler mUpdateTimeHandler = new EngineHandler(this);
-        private Calendar mCalendar;
+        private WallClock mWallClock;
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mWallClock.setTimeZone(TimeZone.getDefault());
+                requestFrame();
+            }
+        };
+        /* Picks the update policy from battery and power-save broadcasts. */
+        private final UpdateRateGovernor mUpdateRate = new UpdateRateGovernor();
+        private final BroadcastReceiver mPowerReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                boolean changed;
+                if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                    changed = mUpdateRate.setBatteryState(
+                            intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1),
+                            intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1),
+                            intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0);
+                } else {
+                    changed = mUpdateRate.setPowerSaveMode(isPowerSaveMode());
+                }
+                if (changed) {
+                    updateTimer();
+                }
+            }
+        };
+        private boolean mRegisteredReceivers = false;
+        /* Registered for the engine's whole life, so that settings stick while it is hidden. */
+        private final BroadcastReceiver mDebugReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onDebugIntent(intent);
             }
         };
-        private boolean mRegisteredTimeZoneReceiver = false;
         private boolean mMuteMode;
-        private float mCenterX;
-        private float mCenterY;
-        private Paint mShapePaint;
-        private Paint mWhiteTickPaint;
-        private Paint mBlackTickPaint;
+        private final PaintSet mInteractivePaints = new PaintSet("interactive", true, false);
+        /* Rebuilt whenever the device properties change, see createAmbientPaints(). */
+        private PaintSet mAmbientPaints;
+        /* The set for the current mode; switching modes swaps this one reference. */
+        private PaintSet mPaints = mInteractivePaints;
+        /* Draws the prerendered ambient masks onto the black screen. */
+        private Paint mMaskPaint;
+        /* Only used to schedule updates; frames are drawn by the render thread's own copy. */
+        private final WedgeGeometry mGeometry = new WedgeGeometry();
+        private final RedrawScheduler mRedrawScheduler = new RedrawScheduler(mGeometry);
+        private String mWedgeRendererName = WedgeRenderer.PathRenderer.NAME;
+        private boolean mUseWedgeTable;
         private boolean mAmbient;
+        private boolean mLowBitAmbient;
+        private boolean mBurnInProtection;
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
+        private boolean mRound;
+        /* Bottom inset of round screens with a flat "chin", in pixels. */
+        private int mChinHeight;
+
+        /*
+         * Renders every frame off the main thread. onDraw() only blits the latest finished
+         * frame; the render thread asks for another onDraw() each time it finishes one.
+         */
+        private RenderThread mRenderThread;
+
+        /* Render statistics, printed by Minimalist.dump(). */
+        private final TimingHistogram mBlitTimes = new TimingHistogram();
+        private final TimingHistogram mUpdateLateness = new TimingHistogram();
+        /*
+         * SystemClock.uptimeMillis() at which the next MSG_UPDATE_TIME is due, or 0 if none is
+         * scheduled. The handler schedules by uptime too, so wall clock changes do not show up
+         * as lateness.
+         */
+        private long mUpdateDueUptimeMs;
+        /* From onTimeTick to the end of the first frame that shows the new minute. */
+        private final TimingHistogram mAmbientWakeTimes = new TimingHistogram();
+        /* System.nanoTime() of the ambient time tick being handled, or 0. */
+        private long mAmbientWakeStartNanos;
+        /* Dial minute of that tick. */
+        private int mAmbientWakeMinute;
+
+        /* Renders the next ambient minute while the current one is on screen. */
+        private AmbientPrerenderer mAmbientPrerenderer;
+
+        /* Runs a renderer comparison off the main thread, or null. Main thread only. */
+        private Thread mRendererComparisonThread;
+        /* Output of the last finished renderer comparison, printed by dump(), or null. */
+        private volatile String mRendererComparison;
+
+        /*
+         * Smooth sweep: while it runs, frames are requested on vsync through the Choreographer
+         * instead of by MSG_UPDATE_TIME, and the minute edge moves every frame.
+         */
+        private Choreographer mChoreographer;
+        private final FrameBudgetGovernor mFrameBudget = new FrameBudgetGovernor();
+        private boolean mSmoothSweepEnabled;
+        private boolean mSmoothSweepRunning;
+        /* RenderThread.getTotalRenderNanos() already charged to mFrameBudget. */
+        private long mChargedRenderNanos;
+        private long mLastInteractionUptimeMs;
+        private int mScreenOffTimeoutMs = DEFAULT_SCREEN_OFF_TIMEOUT_MS;
+
+        private final Choreographer.FrameCallback mSmoothFrameCallback =
+                new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (!mSmoothSweepRunning) {
+                    return;
+                }
+                chargeRenderTime();
+                if (!shouldSmoothSweepRun()) {
+                    /* Out of budget or about to dim: go back to the tick-paced path. */
+                    updateTimer();
+                    return;
+                }
+                if (mFrameBudget.shouldDrawFrame(frameTimeNanos)) {
+                    mUpdateRate.recordWakeup(SystemClock.elapsedRealtime());
+                    requestFrame();
+                }
+                mChoreographer.postFrameCallback(this);
+            }
+        };
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -100,58 +350,121 @@ public class Minimalist extends CanvasWatchFaceService {
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(Minimalist.this)
                     .setViewProtectionMode(PROTECT_STATUS_BAR)
+                    /* Taps restart the screen timeout the smooth sweep watches. */
+                    .setAcceptsTapEvents(true)
                     .build());
 
-            mCalendar = Calendar.getInstance();
+            mWallClock = new WallClock(TimeZone.getDefault());
+            mChoreographer = Choreographer.getInstance();
+            mAmbientPrerenderer = new AmbientPrerenderer();
+            mRenderThread = new RenderThread(new Runnable() {
+                @Override
+                public void run() {
+                    postInvalidate();
+                }
+            });
 
             initializeWatchFace();
+
+            Minimalist.this.registerReceiver(mDebugReceiver, new IntentFilter(ACTION_DEBUG),
+                    Manifest.permission.DUMP, null);
         }
 
         private void initializeWatchFace() {
-            mShapePaint = new Paint();
-            mShapePaint.setColor(Color.WHITE);
-            mShapePaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            mShapePaint.setAntiAlias(true);
+            mAmbientPaints = createAmbientPaints();
 
-            mWhiteTickPaint = new Paint();
-            mWhiteTickPaint.setColor(Color.WHITE);
-            mWhiteTickPaint.setStrokeWidth(2f);
-            mWhiteTickPaint.setAntiAlias(true);
-            mWhiteTickPaint.setStyle(Paint.Style.STROKE);
+            mMaskPaint = new Paint();
+            mMaskPaint.setColor(Color.WHITE);
+            mMaskPaint.setAntiAlias(false);
+            mMaskPaint.setFilterBitmap(false);
+        }
 
-            mBlackTickPaint = new Paint();
-            mBlackTickPaint.setColor(Color.BLACK);
-            mBlackTickPaint.setStrokeWidth(2f);
-            mBlackTickPaint.setAntiAlias(true);
-            mBlackTickPaint.setStyle(Paint.Style.STROKE);
+        /**
+         * Returns the paints for ambient mode on this device. Low-bit screens cannot show the
+         * grey edge pixels, so anti-aliasing is only worth its cost elsewhere.
+         */
+        private PaintSet createAmbientPaints() {
+            return new PaintSet(mLowBitAmbient ? "low-bit ambient" : "ambient", !mLowBitAmbient,
+                    mBurnInProtection);
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            stopSmoothSweep();
+            mRenderThread.quit();
+            mAmbientPrerenderer.quit();
+            Minimalist.this.unregisterReceiver(mDebugReceiver);
+            mEngines.remove(this);
             super.onDestroy();
         }
 
+        @Override
+        public void onPropertiesChanged(Bundle properties) {
+            super.onPropertiesChanged(properties);
+            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mAmbientPaints = createAmbientPaints();
+            if (mAmbient) {
+                mPaints = mAmbientPaints;
+            }
+            configureAmbientPrerenderer();
+            requestFrame();
+        }
+
+        @Override
+        public void onApplyWindowInsets(WindowInsets insets) {
+            super.onApplyWindowInsets(insets);
+            mRound = insets.isRound();
+            mChinHeight = insets.getSystemWindowInsetBottom();
+            mGeometry.setRound(mRound);
+            configureAmbientPrerenderer();
+            requestFrame();
+        }
+
+        private void configureAmbientPrerenderer() {
+            mAmbientPrerenderer.configure(mSurfaceWidth, mSurfaceHeight, mRound, mChinHeight,
+                    mAmbientPaints);
+        }
+
+        /**
+         * In ambient mode the frame for this minute was normally rendered during the previous
+         * wake, so the tick only swaps it in and starts on the next one.
+         */
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            mUpdateRate.recordWakeup(SystemClock.elapsedRealtime());
+            if (!mAmbient) {
+                requestFrame();
+                return;
+            }
+            mAmbientWakeStartNanos = System.nanoTime();
+            mWallClock.setTimeInMillis(mClock.currentTimeMillis());
+            mAmbientWakeMinute = currentDialMinute();
+            boolean prerendered = mAmbientPrerenderer.swap(mAmbientWakeMinute);
+            mAmbientPrerenderer.request(AmbientPrerenderer.nextMinute(mAmbientWakeMinute));
+            if (prerendered) {
+                invalidate();
+            } else {
+                requestFrame();
+            }
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
             mAmbient = inAmbientMode;
-
+            mPaints = mAmbient ? mAmbientPaints : mInteractivePaints;
             if (mAmbient) {
-                mShapePaint.setAntiAlias(false);
-                mWhiteTickPaint.setAntiAlias(false);
-                mBlackTickPaint.setAntiAlias(false);
+                mWallClock.setTimeInMillis(mClock.currentTimeMillis());
+                mAmbientPrerenderer.request(AmbientPrerenderer.nextMinute(currentDialMinute()));
             } else {
-                mShapePaint.setAntiAlias(true);
-                mWhiteTickPaint.setAntiAlias(false);
-                mBlackTickPaint.setAntiAlias(true);
+                mAmbientPrerenderer.cancel();
+                mAmbientWakeStartNanos = 0;
+                onUserInteraction();
             }
+            requestFrame();
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
             updateTimer();
@@ -165,7 +478,7 @@ public class Minimalist extends CanvasWatchFaceService {
             /* Dim display in mute mode. */
             if (mMuteMode != inMuteMode) {
                 mMuteMode = inMuteMode;
-                invalidate();
+                requestFrame();
             }
         }
 
@@ -178,120 +491,144 @@ public class Minimalist extends CanvasWatchFaceService {
              * insets, so that, on round watches with a "chin", the watch face is centered on the
              * entire screen, not just the usable portion.
              */
-            mCenterX = width / 2f;
-            mCenterY = height / 2f;
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            mGeometry.setSurfaceSize(width, height);
+
+            configureAmbientPrerenderer();
+            requestFrame();
         }
 
+        /**
+         * Captures the current time and mode and hands them to the render thread, which
+         * invalidates the surface once the frame is ready. Use this instead of
+         * {@link #invalidate()} whenever what the face shows may have changed.
+         */
+        private void requestFrame() {
+            mWallClock.setTimeInMillis(mClock.currentTimeMillis());
+            FrameState state = mRenderThread.obtainState();
+            state.set(mWallClock.getHour(), mWallClock.getMinute(), mWallClock.getSecond(),
+                    mWallClock.getMillisecond(), mSmoothSweepRunning, mAmbient, mMuteMode,
+                    mLowBitAmbient, mBurnInProtection, mPaints, mWedgeRendererName,
+                    mUseWedgeTable, mSurfaceWidth, mSurfaceHeight, mRound, mChinHeight);
+            mRenderThread.publish(state);
+        }
+
+        /**
+         * Blits the newest finished frame: the prerendered ambient minute if it is current,
+         * otherwise the latest frame from the render thread. Nothing is rasterized here.
+         */
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+            long drawStartNanos = System.nanoTime();
+            mWallClock.setTimeInMillis(mClock.currentTimeMillis());
+            int dialMinute = currentDialMinute();
+
+            int shownMinute = -1;
+            int offsetX = 0;
+            int offsetY = 0;
+            if (mAmbient && mBurnInProtection) {
+                offsetX = FaceRenderer.burnInOffsetX(mWallClock.getMinute());
+                offsetY = FaceRenderer.burnInOffsetY(mWallClock.getMinute());
+            }
+            if (mAmbient && mAmbientPrerenderer.draw(canvas, dialMinute, offsetX, offsetY,
+                    mMaskPaint)) {
+                shownMinute = dialMinute;
+            } else {
+                FrameHandoff.Frame frame = mRenderThread.acquireLatestFrame();
+                if (frame.getState() != null) {
+                    canvas.drawBitmap(frame.getBitmap(), 0, 0, null);
+                    shownMinute = frame.getState().getDialMinute();
+                } else {
+                    /* Nothing rendered yet. */
+                    canvas.drawColor(Color.BLACK);
+                }
+            }
 
-            drawBackground(canvas);
-            drawWatchFace(canvas);
+            long blitNanos = System.nanoTime() - drawStartNanos;
+            mBlitTimes.record(blitNanos);
+            if (mSmoothSweepRunning) {
+                mFrameBudget.charge(blitNanos);
+            }
+            if (mAmbientWakeStartNanos != 0 && shownMinute == mAmbientWakeMinute) {
+                mAmbientWakeTimes.record(System.nanoTime() - mAmbientWakeStartNanos);
+                mAmbientWakeStartNanos = 0;
+            }
         }
 
-        private void drawBackground(Canvas canvas) {
-            canvas.drawColor(Color.BLACK);
+        /**
+         * Returns the minute on the 12-hour dial of the time last set on {@link #mWallClock}.
+         */
+        private int currentDialMinute() {
+            return mWallClock.getHour() * 60 + mWallClock.getMinute();
         }
 
-        private void drawWatchFace(Canvas canvas) {
-            /*
-             * These calculations reflect the rotation in degrees per unit of time, e.g.,
-             * 360 / 60 = 6 and 360 / 12 = 30.
-             */
-
-            float innerTickRadius = mCenterX - 10;
-            float outerTickRadius = mCenterX;
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                canvas.drawLine(mCenterX + innerX, mCenterY + innerY,
-                        mCenterX + outerX, mCenterY + outerY, mWhiteTickPaint);
+        /**
+         * Applies the extras of an {@link #ACTION_DEBUG} broadcast. Called on the main thread.
+         */
+        private void onDebugIntent(Intent intent) {
+            if (intent.hasExtra(EXTRA_RENDERER)) {
+                setWedgeRenderer(intent.getStringExtra(EXTRA_RENDERER));
             }
-
-            final float minuteHandOffset = mCalendar.get(Calendar.SECOND) / 10f;
-            final float minutesRotation = (mCalendar.get(Calendar.MINUTE) * 6f) + minuteHandOffset;
-
-            final float hourHandOffset = minutesRotation / 12f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
-
-            Path path = new Path();
-            path.moveTo(mCenterX, mCenterY);
-
-            addLineFromBorder(path, hoursRotation);
-
-            float newMinRot = minutesRotation;
-            if (hoursRotation > minutesRotation) {
-                newMinRot += 360;
+            if (intent.hasExtra(EXTRA_WEDGE_TABLE)) {
+                mUseWedgeTable = intent.getBooleanExtra(EXTRA_WEDGE_TABLE, false);
+                requestFrame();
             }
-
-            int currentDeg = (int) hoursRotation + 1;
-
-            for (int i = currentDeg; i < newMinRot; i++) {
-                if (i % 360 == 315) {
-                    addLineToPath(path, 0, 0);
-                } else if (i % 360 == 135) {
-                    addLineToPath(path, mCenterX * 2, mCenterY * 2);
-                } else if (i % 360 == 45) {
-                    addLineToPath(path, mCenterX * 2, 0);
-                } else if (i % 360 == 225) {
-                    addLineToPath(path, 0, mCenterY * 2);
-                }
+            if (intent.hasExtra(EXTRA_SMOOTH) || intent.hasExtra(EXTRA_SMOOTH_FPS)
+                    || intent.hasExtra(EXTRA_SMOOTH_BUDGET)) {
+                setSmoothSweep(intent.hasExtra(EXTRA_SMOOTH)
+                                ? intent.getBooleanExtra(EXTRA_SMOOTH, false) : null,
+                        intent.getIntExtra(EXTRA_SMOOTH_FPS, 0),
+                        intent.getIntExtra(EXTRA_SMOOTH_BUDGET, 0));
             }
-
-            addLineFromBorder(path, minutesRotation);
-
-            path.close();
-            canvas.drawPath(path, mShapePaint);
-
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickAngle = tickIndex * 30f;
-                if ((tickAngle > hoursRotation && tickAngle < newMinRot) || (tickAngle + 360 > hoursRotation && tickAngle + 360 < newMinRot)) {
-                    float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                    float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                    float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                    float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                    float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                    canvas.drawLine(mCenterX + innerX, mCenterY + innerY,
-                            mCenterX + outerX, mCenterY + outerY, mBlackTickPaint);
-                }
+            if (intent.getBooleanExtra(EXTRA_COMPARE_RENDERERS, false)) {
+                startRendererComparison();
+            }
+            if (intent.getBooleanExtra(EXTRA_RESET_STATS, false)) {
+                resetStats();
             }
         }
 
-        private void addLineFromBorder(Path path, float angle) {
-            if (angle < 45) {
-                float angleRad = (float) Math.toRadians(angle);
-                addLineToPath(path, mCenterX + ((float) Math.tan(angleRad) * mCenterY), 0);
-            } else if (angle < 90) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
-                addLineToPath(path, mCenterX * 2, mCenterY - ((float) Math.tan(angleRad) * mCenterX));
-            } else if (angle < 135) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
-                addLineToPath(path, mCenterX * 2, mCenterY + ((float) Math.tan(angleRad) * mCenterX));
-            } else if (angle < 180) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
-                addLineToPath(path, mCenterX + ((float) Math.tan(angleRad) * mCenterY), mCenterY * 2);
-            } else if (angle < 225) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
-                addLineToPath(path, mCenterX - ((float) Math.tan(angleRad) * mCenterY), mCenterY * 2);
-            } else if (angle < 270) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
-                addLineToPath(path, 0, mCenterY + ((float) Math.tan(angleRad) * mCenterX));
-            } else if (angle < 315) {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
-                addLineToPath(path, 0, mCenterY - ((float) Math.tan(angleRad) * mCenterX));
-            } else {
-                float angleRad = (float) Math.toRadians(Math.abs(angle - 360));
-                addLineToPath(path, mCenterX - ((float) Math.tan(angleRad) * mCenterY), 0);
+        /**
+         * Switches the wedge renderer. Unknown names are ignored.
+         */
+        private void setWedgeRenderer(String name) {
+            if (!WedgeRenderer.PathRenderer.NAME.equals(name)
+                    && !WedgeRenderer.VerticesRenderer.NAME.equals(name)) {
+                return;
+            }
+            if (!name.equals(mWedgeRendererName)) {
+                mWedgeRendererName = name;
+                requestFrame();
             }
         }
 
-        private void addLineToPath(Path path, float x, float y) {
-            path.lineTo(x, y);
+        /**
+         * Benchmarks the wedge renderers at this engine's surface size on a background thread,
+         * with their own renderers and bitmaps, unless a comparison is already running. The
+         * results are kept for dump().
+         */
+        private void startRendererComparison() {
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0
+                    || (mRendererComparisonThread != null
+                            && mRendererComparisonThread.isAlive())) {
+                return;
+            }
+            final int width = mSurfaceWidth;
+            final int height = mSurfaceHeight;
+            mRendererComparisonThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    StringWriter output = new StringWriter();
+                    PrintWriter writer = new PrintWriter(output);
+                    RendererComparison.run(writer, "", width, height,
+                            new WedgeRenderer.PathRenderer(), new WedgeRenderer.VerticesRenderer());
+                    writer.flush();
+                    mRendererComparison = output.toString();
+                }
+            }, "RendererComparison");
+            mRendererComparisonThread.setPriority(Thread.MIN_PRIORITY);
+            mRendererComparisonThread.start();
         }
 
         @Override
@@ -299,10 +636,11 @@ public class Minimalist extends CanvasWatchFaceService {
             super.onVisibilityChanged(visible);
 
             if (visible) {
+                onUserInteraction();
                 registerReceiver();
                 /* Update time zone in case it changed while we weren't visible. */
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mWallClock.setTimeZone(TimeZone.getDefault());
+                requestFrame();
             } else {
                 unregisterReceiver();
             }
@@ -312,20 +650,35 @@ public class Minimalist extends CanvasWatchFaceService {
         }
 
         private void registerReceiver() {
-            if (mRegisteredTimeZoneReceiver) {
+            if (mRegisteredReceivers) {
                 return;
             }
-            mRegisteredTimeZoneReceiver = true;
+            mRegisteredReceivers = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             Minimalist.this.registerReceiver(mTimeZoneReceiver, filter);
+
+            /*
+             * The battery broadcast is sticky, so registering delivers the current state right
+             * away. Power-save mode is read here as it may have changed while we were hidden.
+             */
+            mUpdateRate.setPowerSaveMode(isPowerSaveMode());
+            IntentFilter powerFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+            powerFilter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+            Minimalist.this.registerReceiver(mPowerReceiver, powerFilter);
         }
 
         private void unregisterReceiver() {
-            if (!mRegisteredTimeZoneReceiver) {
+            if (!mRegisteredReceivers) {
                 return;
             }
-            mRegisteredTimeZoneReceiver = false;
+            mRegisteredReceivers = false;
             Minimalist.this.unregisterReceiver(mTimeZoneReceiver);
+            Minimalist.this.unregisterReceiver(mPowerReceiver);
+        }
+
+        private boolean isPowerSaveMode() {
+            PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+            return powerManager != null && powerManager.isPowerSaveMode();
         }
 
         /**
@@ -333,30 +686,192 @@ public class Minimalist extends CanvasWatchFaceService {
          */
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
-            if (shouldTimerBeRunning()) {
+            mUpdateDueUptimeMs = 0;
+            stopSmoothSweep();
+            if (shouldSmoothSweepRun()) {
+                startSmoothSweep();
+            } else if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
             }
         }
 
         /**
          * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run in active mode.
+         * should only run in active mode, and not at all under the coarse update policy, which
+         * leaves updates to the minute tick.
          */
         private boolean shouldTimerBeRunning() {
-            return isVisible() && !mAmbient;
+            return isVisible() && !mAmbient
+                    && mUpdateRate.getPolicy() != UpdateRateGovernor.Policy.COARSE;
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Handle updating the time periodically in interactive mode. Rather than waking every
+         * second, sleep until the second in which the edges next move by a visible amount.
          */
         private void handleUpdateTimeMessage() {
-            invalidate();
+            long timeMs = mClock.currentTimeMillis();
+            long uptimeMs = SystemClock.uptimeMillis();
+            mUpdateRate.recordWakeup(SystemClock.elapsedRealtime());
+            if (mUpdateDueUptimeMs != 0) {
+                mUpdateLateness.record(
+                        TimeUnit.MILLISECONDS.toNanos(uptimeMs - mUpdateDueUptimeMs));
+                mUpdateDueUptimeMs = 0;
+            }
+
+            if (shouldSmoothSweepRun()) {
+                /* The budget refilled or the user is back: resume the smooth sweep. */
+                updateTimer();
+                return;
+            }
+            requestFrame();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                mWallClock.setTimeInMillis(timeMs);
+                long delayMs = mRedrawScheduler.delayUntilVisibleChange(timeMs,
+                        mWallClock.getDialSecond(), INTERACTIVE_UPDATE_RATE_MS);
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                mUpdateDueUptimeMs = uptimeMs + delayMs;
+            }
+        }
+
+        /**
+         * Returns whether frames should come from the smooth sweep rather than the tick-paced
+         * timer: it is enabled or the device is charging, the timer would run, the budget allows
+         * it and the screen is not about to time out.
+         */
+        private boolean shouldSmoothSweepRun() {
+            boolean wanted = mSmoothSweepEnabled
+                    || mUpdateRate.getPolicy() == UpdateRateGovernor.Policy.SMOOTH;
+            return wanted && shouldTimerBeRunning()
+                    && mFrameBudget.hasBudget(System.nanoTime()) && !isScreenAboutToDim();
+        }
+
+        private boolean isScreenAboutToDim() {
+            long idleMs = SystemClock.uptimeMillis() - mLastInteractionUptimeMs;
+            return idleMs >= mScreenOffTimeoutMs - DIM_WARNING_MS;
+        }
+
+        private void startSmoothSweep() {
+            mSmoothSweepRunning = true;
+            mChargedRenderNanos = mRenderThread.getTotalRenderNanos();
+            mChoreographer.postFrameCallback(mSmoothFrameCallback);
+        }
+
+        private void stopSmoothSweep() {
+            if (mSmoothSweepRunning) {
+                chargeRenderTime();
+                mSmoothSweepRunning = false;
+                mChoreographer.removeFrameCallback(mSmoothFrameCallback);
+            }
+        }
+
+        /**
+         * Charges the render thread's work since the last call to the smooth sweep budget.
+         */
+        private void chargeRenderTime() {
+            long totalNanos = mRenderThread.getTotalRenderNanos();
+            mFrameBudget.charge(totalNanos - mChargedRenderNanos);
+            mChargedRenderNanos = totalNanos;
+        }
+
+        /**
+         * Restarts the countdown to the screen timeout, which the smooth sweep watches.
+         */
+        private void onUserInteraction() {
+            mLastInteractionUptimeMs = SystemClock.uptimeMillis();
+            mScreenOffTimeoutMs = Settings.System.getInt(getContentResolver(),
+                    Settings.System.SCREEN_OFF_TIMEOUT, DEFAULT_SCREEN_OFF_TIMEOUT_MS);
+        }
+
+        @Override
+        public void onTapCommand(int tapType, int x, int y, long eventTime) {
+            super.onTapCommand(tapType, x, y, eventTime);
+            onUserInteraction();
+            if (!mSmoothSweepRunning && shouldSmoothSweepRun()) {
+                updateTimer();
+            }
+        }
+
+        /**
+         * Changes the smooth sweep settings.
+         *
+         * @param enabled          whether to enable the sweep, or null to leave it as it is
+         * @param maxFps           frame rate cap, or 0 to leave it as it is
+         * @param cpuBudgetPercent CPU budget in percent of one core, or 0 to leave it as it is
+         */
+        private void setSmoothSweep(Boolean enabled, int maxFps, int cpuBudgetPercent) {
+            if (enabled != null) {
+                mSmoothSweepEnabled = enabled;
+            }
+            if (maxFps > 0 || cpuBudgetPercent > 0) {
+                mFrameBudget.setLimits(maxFps > 0 ? maxFps : mFrameBudget.getMaxFps(),
+                        cpuBudgetPercent > 0
+                                ? cpuBudgetPercent : mFrameBudget.getCpuBudgetPercent());
+            }
+            onUserInteraction();
+            updateTimer();
+        }
+
+        /**
+         * Prints frame counts, render, blit and update lateness percentiles, and the hit rate of
+         * every layer cache.
+         */
+        private void dumpStats(PrintWriter writer, String prefix) {
+            FaceRenderer renderer = mRenderThread.getRenderer();
+            writer.print(prefix);
+            writer.print("Engine ");
+            writer.print(Integer.toHexString(System.identityHashCode(this)));
+            writer.print(mAmbient ? " (ambient)" : " (interactive)");
+            writer.print(" frames=");
+            writer.print(renderer.getFrameCount());
+            writer.print(" blits=");
+            writer.print(mBlitTimes.getCount());
+            writer.print(" renderer=");
+            writer.print(mWedgeRendererName);
+            writer.print(mUseWedgeTable ? " wedge=table" : " wedge=computed");
+            writer.print(" paints=");
+            writer.print(mPaints.getName());
+            writer.print(" sweep=");
+            writer.println(mSmoothSweepRunning ? "smooth"
+                    : mSmoothSweepEnabled ? "ticking (smooth paused)" : "ticking");
+
+            String statPrefix = prefix + "  ";
+            renderer.dumpStats(writer, statPrefix);
+            mBlitTimes.dump(writer, statPrefix, "blit");
+            mAmbientWakeTimes.dump(writer, statPrefix, "ambient wake");
+            mAmbientPrerenderer.dump(writer, statPrefix);
+            mUpdateLateness.dump(writer, statPrefix, "update lateness");
+            mFrameBudget.dump(writer, statPrefix);
+            mUpdateRate.dump(writer, statPrefix, SystemClock.elapsedRealtime());
+            if (mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                OverdrawReport.run(writer, statPrefix, mSurfaceWidth, mSurfaceHeight, mRound,
+                        mChinHeight);
+            }
+            String comparison = mRendererComparison;
+            if (comparison != null) {
+                for (String line : comparison.split("\n")) {
+                    writer.print(statPrefix);
+                    writer.println(line);
+                }
             }
         }
+
+        /**
+         * Has the render threads hand their layer bitmaps, and those of the frames that are not
+         * on screen, back to the shared cache. They then trim it to {@code tier} themselves.
+         */
+        private void trimMemory(SharedFaceCache.Tier tier) {
+            mRenderThread.trimMemory(tier);
+            mAmbientPrerenderer.trimMemory(tier);
+        }
+
+        private void resetStats() {
+            mRenderThread.getRenderer().resetStats();
+            mBlitTimes.reset();
+            mAmbientWakeTimes.reset();
+            mAmbientPrerenderer.resetStats();
+            mUpdateLateness.reset();
+            mFrameBudget.resetStats();
+        }
     }
 }
@@ -0,0 +1,68 @@
+package com.jmalexan.minimalist;
+
+import java.io.PrintWriter;
+
+/**
+ * Estimates how many pixels the wedge fills outside the visible dial of a round screen, run
+ * from the dump surface. It samples wedges across the 12-hour dial, bounds each by the screen
+ * rectangle and by the round dial's polygon, and compares their areas, computed with the
+ * shoelace formula, with the circular sector that is actually seen.
+ * <p>
+ * It uses its own geometry, so it can run on the binder thread that serves the dump.
+ */
+final class OverdrawReport {
+
+    /**
+     * Spacing of the sampled frames, giving 720 wedges over the dial.
+     */
+    private static final int SAMPLE_STEP_SECONDS = 60;
+
+    private OverdrawReport() {
+    }
+
+    static void run(PrintWriter writer, String prefix, int width, int height, boolean round,
+            int chinHeight) {
+        WedgeGeometry geometry = new WedgeGeometry();
+        geometry.setSurfaceSize(width, height);
+        float[] vertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+        float radius = Math.min(width, height) / 2f;
+
+        double squareArea = 0;
+        double roundArea = 0;
+        double visibleArea = 0;
+        int frames = 0;
+        for (int second = 0; second < WedgeGeometry.DIAL_SECONDS;
+                second += SAMPLE_STEP_SECONDS) {
+            int hourStep = WedgeGeometry.hourStepOfDialSecond(second);
+            int minuteStep = WedgeGeometry.minuteStepOfDialSecond(second);
+
+            geometry.setRound(false);
+            squareArea += WedgeGeometry.polygonArea(vertices,
+                    geometry.computeWedge(hourStep, minuteStep, vertices));
+            geometry.setRound(true);
+            roundArea += WedgeGeometry.polygonArea(vertices,
+                    geometry.computeWedge(hourStep, minuteStep, vertices));
+
+            float sweep = WedgeGeometry.toDegrees(
+                    WedgeGeometry.sweepEnd(hourStep, minuteStep) - hourStep);
+            visibleArea += sweep / 360 * Math.PI * radius * radius;
+            frames++;
+        }
+
+        writer.print(prefix);
+        writer.print("wedge overdraw on a round dial");
+        writer.print(round ? " (this screen is round" : " (this screen is square");
+        writer.print(chinHeight > 0 ? ", chin " + chinHeight + "px clipped)" : ")");
+        writer.print(": visible px/frame=");
+        writer.print(Math.round(visibleArea / frames));
+        writer.print(" square bound=");
+        writer.print(Math.round(squareArea / frames));
+        writer.print(" (+");
+        writer.print(Math.round((squareArea - visibleArea) * 100 / visibleArea));
+        writer.print("%) round bound=");
+        writer.print(Math.round(roundArea / frames));
+        writer.print(" (+");
+        writer.print(Math.round((roundArea - visibleArea) * 100 / visibleArea));
+        writer.println("%)");
+    }
+}
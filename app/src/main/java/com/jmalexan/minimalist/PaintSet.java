@@ -0,0 +1,70 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+/**
+ * All paint state needed to draw the face in one display mode. The engine keeps one set per
+ * mode and switches between them by swapping a single reference, so a mode change can never
+ * leave some paints configured for the old mode.
+ */
+final class PaintSet {
+
+    private static final float STROKE_WIDTH = 2f;
+
+    private final String mName;
+    private final boolean mOutline;
+    private final Paint mWedgePaint;
+    private final Paint mTickPaint;
+
+    /**
+     * @param antiAlias whether edges are anti-aliased; off for low-bit ambient screens
+     * @param outline   whether the wedge is stroked rather than filled, for burn-in protection
+     */
+    PaintSet(String name, boolean antiAlias, boolean outline) {
+        mName = name;
+        mOutline = outline;
+
+        mWedgePaint = new Paint();
+        mWedgePaint.setColor(Color.WHITE);
+        mWedgePaint.setAntiAlias(antiAlias);
+        if (outline) {
+            mWedgePaint.setStrokeWidth(STROKE_WIDTH);
+            mWedgePaint.setStyle(Paint.Style.STROKE);
+        } else {
+            mWedgePaint.setStyle(Paint.Style.FILL_AND_STROKE);
+        }
+
+        /*
+         * Ticks are XORed over the wedge: white where the layer is empty, cut out where the
+         * wedge is.
+         */
+        mTickPaint = new Paint();
+        mTickPaint.setColor(Color.WHITE);
+        mTickPaint.setStrokeWidth(STROKE_WIDTH);
+        mTickPaint.setAntiAlias(antiAlias);
+        mTickPaint.setStyle(Paint.Style.STROKE);
+        mTickPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.XOR));
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns whether the wedge paint strokes an outline instead of filling the wedge.
+     */
+    boolean isOutline() {
+        return mOutline;
+    }
+
+    Paint getWedgePaint() {
+        return mWedgePaint;
+    }
+
+    Paint getTickPaint() {
+        return mTickPaint;
+    }
+}
@@ -0,0 +1,98 @@
+package com.jmalexan.minimalist;
+
+/**
+ * Predicts when the face will next look different, so that the interactive timer can sleep
+ * through seconds in which nothing visible moves.
+ * <p>
+ * The edges only move when the second changes, and by a small amount: the minute edge turns a
+ * tenth of a degree per second, which is well under a pixel at the border of most screens. The
+ * face is considered changed when either edge's border point crosses into another pixel, or when
+ * a tick enters or leaves the wedge.
+ */
+final class RedrawScheduler {
+
+    /**
+     * Longest the scheduler will look ahead. In practice the minute edge crosses a pixel every
+     * few seconds, so this is only a safety bound.
+     */
+    static final int MAX_LOOKAHEAD_SECONDS = 60;
+
+    /**
+     * Bits used for each pixel coordinate in a {@link #visibleStateKey}, enough for surfaces up
+     * to 4096 pixels across.
+     */
+    private static final int COORDINATE_BITS = 12;
+
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+
+    private final WedgeGeometry mGeometry;
+    private final float[] mScratchPoints = new float[4];
+    private final int[] mScratchTicks = new int[WedgeGeometry.TICK_COUNT];
+
+    RedrawScheduler(WedgeGeometry geometry) {
+        mGeometry = geometry;
+    }
+
+    /**
+     * Returns how long to wait, from {@code timeMs}, until the first second boundary at which the
+     * face will look different from how it looks at {@code dialSecond}.
+     *
+     * @param timeMs     the current wall-clock time
+     * @param dialSecond the second of the 12-hour dial that {@code timeMs} falls in
+     * @param periodMs   the interval between possible changes, i.e. one second
+     */
+    long delayUntilVisibleChange(long timeMs, int dialSecond, long periodMs) {
+        int seconds = secondsUntilVisibleChange(dialSecond);
+        return periodMs - (timeMs % periodMs) + (seconds - 1) * periodMs;
+    }
+
+    /**
+     * Returns the number of whole seconds after {@code dialSecond} until the face first looks
+     * different, between 1 and {@link #MAX_LOOKAHEAD_SECONDS}.
+     */
+    int secondsUntilVisibleChange(int dialSecond) {
+        long currentKey = visibleStateKey(dialSecond);
+        for (int seconds = 1; seconds < MAX_LOOKAHEAD_SECONDS; seconds++) {
+            int nextSecond = (dialSecond + seconds) % WedgeGeometry.DIAL_SECONDS;
+            if (visibleStateKey(nextSecond) != currentKey) {
+                return seconds;
+            }
+        }
+        return MAX_LOOKAHEAD_SECONDS;
+    }
+
+    /**
+     * Returns a key that is equal for two dial seconds exactly when the face looks the same at
+     * both: the pixels the hour and minute edges leave the screen through, and the run of ticks
+     * the wedge covers. The key is never negative.
+     */
+    long visibleStateKey(int dialSecond) {
+        int hourStep = WedgeGeometry.hourStepOfDialSecond(dialSecond);
+        int minuteStep = WedgeGeometry.minuteStepOfDialSecond(dialSecond);
+        return ((long) tickKey(hourStep, minuteStep) << (COORDINATE_BITS * 4))
+                | edgeKey(hourStep, minuteStep);
+    }
+
+    /**
+     * Returns a key identifying the pixels through which the hour and minute edges leave the
+     * screen. The key is never negative.
+     */
+    long edgeKey(int hourStep, int minuteStep) {
+        mGeometry.borderPoint(hourStep, mScratchPoints, 0);
+        mGeometry.borderPoint(minuteStep, mScratchPoints, 2);
+        long key = 0;
+        for (int i = 0; i < 4; i++) {
+            key = (key << COORDINATE_BITS) | ((int) mScratchPoints[i] & COORDINATE_MASK);
+        }
+        return key;
+    }
+
+    /**
+     * Returns a key identifying the run of ticks covered by the wedge. The key is never
+     * negative.
+     */
+    int tickKey(int hourStep, int minuteStep) {
+        int tickCount = WedgeGeometry.computeCoveredTicks(hourStep, minuteStep, mScratchTicks);
+        return tickCount == 0 ? 0 : mScratchTicks[0] * (WedgeGeometry.TICK_COUNT + 1) + tickCount;
+    }
+}
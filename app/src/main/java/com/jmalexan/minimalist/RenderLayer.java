@@ -0,0 +1,117 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * One named layer of the watch face, rasterized into its own cache bitmap. The layer is only
+ * rendered again when its invalidation key changes; the key should capture everything the
+ * layer's pixels depend on apart from the surface size, which resets the layer on its own.
+ */
+abstract class RenderLayer {
+
+    /**
+     * Key that never matches a real one, forcing the next update to render.
+     */
+    static final long INVALID_KEY = -1;
+
+    private final String mName;
+    private final Bitmap.Config mConfig;
+    private final Canvas mCanvas = new Canvas();
+    /* The entry the bitmap was taken from. */
+    private SharedFaceCache.Entry mEntry;
+    private Bitmap mBitmap;
+    private long mKey = INVALID_KEY;
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * @param config bitmap configuration of the cache; opaque layers can use a format without
+     *               alpha to halve their memory
+     */
+    RenderLayer(String name, Bitmap.Config config) {
+        mName = name;
+        mConfig = config;
+    }
+
+    /**
+     * Returns the key describing what the layer would render right now. Keys are never
+     * negative.
+     */
+    protected abstract long computeKey();
+
+    /**
+     * Renders the layer from scratch. The canvas holds the previous contents, so layers with
+     * transparent areas must clear it first.
+     */
+    protected abstract void render(Canvas canvas);
+
+    /**
+     * Takes a cache bitmap for a new surface from the entry's pool, handing the current one back.
+     */
+    void setSize(SharedFaceCache.Entry entry) {
+        release();
+        mEntry = entry;
+        mBitmap = entry.obtainBitmap(mConfig);
+        mCanvas.setBitmap(mBitmap);
+    }
+
+    /**
+     * Forces the next {@link #update()} to render.
+     */
+    void invalidate() {
+        mKey = INVALID_KEY;
+    }
+
+    /**
+     * Renders the layer if its key changed since the last render.
+     *
+     * @return whether the cache bitmap was rendered again
+     */
+    boolean update() {
+        long key = computeKey();
+        if (key == mKey) {
+            mHits++;
+            return false;
+        }
+        mMisses++;
+        render(mCanvas);
+        mKey = key;
+        return true;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    long getHits() {
+        return mHits;
+    }
+
+    long getMisses() {
+        return mMisses;
+    }
+
+    void resetCounters() {
+        mHits = 0;
+        mMisses = 0;
+    }
+
+    /**
+     * Hands the cache bitmap back to its entry. The layer must be sized again before its next
+     * update.
+     */
+    void release() {
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            mEntry.recycleBitmap(mBitmap);
+            mBitmap = null;
+            mEntry = null;
+        }
+        mKey = INVALID_KEY;
+    }
+}
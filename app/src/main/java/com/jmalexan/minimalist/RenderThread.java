@@ -0,0 +1,165 @@
+package com.jmalexan.minimalist;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dedicated looper on which all frames are rendered, so that the main thread only captures
+ * {@link FrameState} snapshots and blits finished frames.
+ * <p>
+ * Snapshots go in through a single atomic slot: publishing replaces whatever snapshot is still
+ * waiting, so the render thread always starts from the newest state and never works through a
+ * backlog. Finished frames come out through a {@link FrameHandoff}. Snapshots the render thread
+ * is done with, and those replaced before it got to them, go back to a small pool the main
+ * thread takes the next ones from, so capturing a frame allocates nothing.
+ */
+final class RenderThread {
+
+    /**
+     * Snapshots kept for reuse: enough for one being filled, one waiting and one being rendered.
+     */
+    private static final int STATE_POOL_SIZE = 3;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final AtomicReference<FrameState> mPendingState = new AtomicReference<>();
+    /* Free snapshots; each slot is taken and refilled with a single atomic operation. */
+    private final AtomicReferenceArray<FrameState> mStatePool =
+            new AtomicReferenceArray<>(STATE_POOL_SIZE);
+    private final FrameHandoff mHandoff = new FrameHandoff();
+    private final FaceRenderer mRenderer = new FaceRenderer();
+    /* Time spent rendering and publishing frames since the thread started. */
+    private final AtomicLong mTotalRenderNanos = new AtomicLong();
+    private final Runnable mOnFrameReady;
+
+    private final Runnable mRenderPending = new Runnable() {
+        @Override
+        public void run() {
+            FrameState state = mPendingState.getAndSet(null);
+            if (state == null) {
+                return;
+            }
+            if (state.mWidth == 0 || state.mHeight == 0) {
+                recycleState(state);
+                return;
+            }
+            long startNanos = System.nanoTime();
+            mRenderer.render(state, mHandoff.beginFrame(state));
+            recycleState(state);
+            mHandoff.publish();
+            mTotalRenderNanos.addAndGet(System.nanoTime() - startNanos);
+            mOnFrameReady.run();
+        }
+    };
+
+    /**
+     * @param onFrameReady run on the render thread after each frame is published, typically to
+     *                     ask for the surface to be redrawn
+     */
+    RenderThread(Runnable onFrameReady) {
+        mOnFrameReady = onFrameReady;
+        mThread = new HandlerThread("RenderThread", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Returns a snapshot to fill in and {@link #publish}, reused if one is free. Its contents are
+     * undefined. Called on the main thread.
+     */
+    FrameState obtainState() {
+        for (int i = 0; i < STATE_POOL_SIZE; i++) {
+            FrameState state = mStatePool.getAndSet(i, null);
+            if (state != null) {
+                return state;
+            }
+        }
+        return new FrameState();
+    }
+
+    /**
+     * Asks for a frame of {@code state}, which belongs to the render thread from now on. Called
+     * on the main thread; never blocks.
+     */
+    void publish(FrameState state) {
+        FrameState replaced = mPendingState.getAndSet(state);
+        if (replaced == null) {
+            mHandler.post(mRenderPending);
+        } else {
+            recycleState(replaced);
+        }
+    }
+
+    /**
+     * Puts a snapshot nobody reads any more back into the pool. If the pool is full, it is left
+     * to the garbage collector. Safe to call from either thread.
+     */
+    private void recycleState(FrameState state) {
+        for (int i = 0; i < STATE_POOL_SIZE; i++) {
+            if (mStatePool.compareAndSet(i, null, state)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the most recently rendered frame. Called on the main thread.
+     */
+    FrameHandoff.Frame acquireLatestFrame() {
+        return mHandoff.acquireLatest();
+    }
+
+    /**
+     * Returns the total time spent rendering frames so far, for budgeting. Safe to call from
+     * any thread.
+     */
+    long getTotalRenderNanos() {
+        return mTotalRenderNanos.get();
+    }
+
+    /**
+     * Returns the renderer, for its statistics.
+     */
+    FaceRenderer getRenderer() {
+        return mRenderer;
+    }
+
+    /**
+     * Hands the renderer's layer bitmaps, and those of the frames the main thread is not about
+     * to show, back to the {@link SharedFaceCache}, and trims it to {@code tier}. The frame on
+     * screen is kept, so the face can still be blitted; the next frame takes the layers and
+     * frames again. Called on the main thread.
+     */
+    void trimMemory(final SharedFaceCache.Tier tier) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.release();
+                mHandoff.trimRenderSide();
+                SharedFaceCache.getInstance().trim(tier);
+            }
+        });
+    }
+
+    /**
+     * Stops the thread and hands every frame and cache back to the {@link SharedFaceCache}.
+     * Called on the main thread, which must not acquire frames afterwards.
+     */
+    void quit() {
+        mHandler.removeCallbacksAndMessages(null);
+        mHandoff.releaseMainSide();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.release();
+                mHandoff.releaseRenderSide();
+            }
+        });
+        mThread.quitSafely();
+    }
+}
@@ -0,0 +1,115 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-device benchmark of the {@link WedgeRenderer}s, started by the debug broadcast. Every renderer
+ * draws the same sample of wedges across the 12-hour dial into an offscreen bitmap. The
+ * comparison reports each renderer's mean time per wedge, and how many pixels differ from the
+ * first renderer's output.
+ * <p>
+ * It uses its own geometry, paint and bitmaps, so it can run on a background thread of its own
+ * without touching the engine's state.
+ */
+final class RendererComparison {
+
+    /**
+     * Spacing of the sampled frames, giving 720 wedges over the dial.
+     */
+    private static final int SAMPLE_STEP_SECONDS = 60;
+
+    /**
+     * Difference in a color channel above which a pixel counts as changed beyond anti-aliasing.
+     */
+    private static final int MAJOR_DIFFERENCE = 128;
+
+    private RendererComparison() {
+    }
+
+    static void run(PrintWriter writer, String prefix, int width, int height,
+            WedgeRenderer... renderers) {
+        WedgeGeometry geometry = new WedgeGeometry();
+        geometry.setSurfaceSize(width, height);
+        float[] vertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setAntiAlias(true);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        int[] referencePixels = new int[width * height];
+        int[] pixels = new int[width * height];
+
+        writer.print(prefix);
+        writer.print("Wedge renderers at ");
+        writer.print(width);
+        writer.print("x");
+        writer.println(height);
+
+        for (WedgeRenderer renderer : renderers) {
+            long startNanos = System.nanoTime();
+            int frames = 0;
+            for (int second = 0; second < WedgeGeometry.DIAL_SECONDS;
+                    second += SAMPLE_STEP_SECONDS) {
+                drawSample(canvas, geometry, renderer, second, vertices, paint);
+                frames++;
+            }
+            long meanNanos = (System.nanoTime() - startNanos) / frames;
+
+            long differingPixels = 0;
+            long majorPixels = 0;
+            if (renderer != renderers[0]) {
+                for (int second = 0; second < WedgeGeometry.DIAL_SECONDS;
+                        second += SAMPLE_STEP_SECONDS) {
+                    drawSample(canvas, geometry, renderers[0], second, vertices, paint);
+                    bitmap.getPixels(referencePixels, 0, width, 0, 0, width, height);
+                    drawSample(canvas, geometry, renderer, second, vertices, paint);
+                    bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                    for (int i = 0; i < pixels.length; i++) {
+                        if (pixels[i] != referencePixels[i]) {
+                            differingPixels++;
+                            if (Math.abs(Color.red(pixels[i]) - Color.red(referencePixels[i]))
+                                    > MAJOR_DIFFERENCE) {
+                                majorPixels++;
+                            }
+                        }
+                    }
+                }
+            }
+
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(renderer.getName());
+            writer.print(": mean=");
+            writer.print(TimeUnit.NANOSECONDS.toMicros(meanNanos));
+            writer.print("us/frame");
+            if (renderer != renderers[0]) {
+                writer.print(" differing pixels/frame=");
+                writer.print(differingPixels / frames);
+                writer.print(" (");
+                writer.print(majorPixels / frames);
+                writer.print(" beyond anti-aliasing) vs ");
+                writer.print(renderers[0].getName());
+            }
+            writer.println();
+        }
+
+        bitmap.recycle();
+    }
+
+    private static void drawSample(Canvas canvas, WedgeGeometry geometry, WedgeRenderer renderer,
+            int dialSecond, float[] vertices, Paint paint) {
+        int vertexCount = geometry.computeWedge(WedgeGeometry.hourStepOfDialSecond(dialSecond),
+                WedgeGeometry.minuteStepOfDialSecond(dialSecond), vertices);
+        canvas.drawColor(Color.BLACK);
+        renderer.draw(canvas, vertices, vertexCount, paint);
+    }
+}
@@ -0,0 +1,414 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Process-wide cache of what a face needs that only depends on the surface: the wedge table, the
+ * tick lines and the bitmaps of the layer caches and rendered frames. The service creates a
+ * fresh engine for the live face, for the picker preview and whenever the surface is re-created;
+ * through this cache they share one copy instead of each building their own.
+ * <p>
+ * Entries are keyed by surface size and shape, and reference counted. Tables are shared
+ * outright, even between engines drawing at the same time. Bitmaps hold per-engine pixels, so
+ * an entry pools them instead: a released layer or frame hands its bitmap back, and the next one
+ * of the same size and format takes it over rather than allocating. An entry nobody holds stays
+ * cached so that a re-created engine finds it; the least recently used ones are evicted once
+ * they hold more than {@link #MAX_IDLE_BYTES}.
+ * <p>
+ * Under memory pressure the cache is trimmed tier by tier, see {@link Tier}. Every tier is
+ * rebuilt lazily by the next frame that needs it.
+ * <p>
+ * The cache and each entry have their own lock, as render threads of several engines use them
+ * concurrently. The cache's lock is always taken first. Neither is held while a table or bitmap
+ * is built, so a trim on the main thread never waits for a render thread's work.
+ */
+final class SharedFaceCache {
+
+    /**
+     * What {@link #trim} drops, in the order memory pressure gives it up. Each tier includes the
+     * ones before it.
+     */
+    enum Tier {
+        /**
+         * The wedge tables, a border point for every step of the full dial. They are the
+         * largest item per entry and take only a few milliseconds to rebuild.
+         */
+        TABLES,
+        /**
+         * Layer and frame bitmaps: those pooled in the cache here, and those of the engines'
+         * layer caches and of their rendered frames other than the one on screen, which the
+         * engines hand back themselves.
+         */
+        LAYER_BITMAPS,
+        /**
+         * The tick lines, and with them every entry no engine holds.
+         */
+        TICKS
+    }
+
+    /**
+     * Memory that entries no engine holds may keep, about one 454 px face with its wedge table,
+     * layer and frames.
+     */
+    static final long MAX_IDLE_BYTES = 4L * 1024 * 1024;
+
+    private static final SharedFaceCache INSTANCE = new SharedFaceCache();
+
+    private final Object mLock = new Object();
+    /* In access order, so iteration starts at the least recently used entry. Guarded by mLock. */
+    private final LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<>(8, 0.75f, true);
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+    /* Tables, bitmaps and tick lines dropped by trim(), indexed by tier. */
+    private final long[] mTierEvictions = new long[Tier.values().length];
+    /* Memory pressure callbacks that asked for a trim, counted by recordTrim(). */
+    private long mTrims;
+
+    static SharedFaceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the entry for a surface, creating it if needed, and takes a reference to it. Every
+     * call must be matched by a {@link #release}.
+     */
+    Entry acquire(int width, int height, boolean round) {
+        Long key = ((long) width << 32) | ((long) height << 1) | (round ? 1 : 0);
+        synchronized (mLock) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                entry = new Entry(width, height, round);
+                mEntries.put(key, entry);
+                mMisses++;
+            } else {
+                mHits++;
+            }
+            entry.mRefCount++;
+            return entry;
+        }
+    }
+
+    /**
+     * Drops a reference taken by {@link #acquire}. The entry stays cached until it is evicted.
+     */
+    void release(Entry entry) {
+        synchronized (mLock) {
+            entry.mRefCount--;
+            evictIdleEntries();
+        }
+    }
+
+    /**
+     * Evicts unreferenced entries, least recently used first, until the rest fit in
+     * {@link #MAX_IDLE_BYTES}. Must hold mLock.
+     */
+    private void evictIdleEntries() {
+        long idleBytes = 0;
+        for (Entry entry : mEntries.values()) {
+            if (entry.mRefCount == 0) {
+                idleBytes += entry.getByteCount();
+            }
+        }
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (idleBytes > MAX_IDLE_BYTES && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mRefCount == 0) {
+                idleBytes -= entry.getByteCount();
+                entry.releasePooledBitmaps();
+                iterator.remove();
+                mEvictions++;
+            }
+        }
+    }
+
+    /**
+     * Counts one memory pressure callback for {@link #dump}. A single callback may call
+     * {@link #trim} several times, once per engine thread.
+     */
+    void recordTrim() {
+        synchronized (mLock) {
+            mTrims++;
+        }
+    }
+
+    /**
+     * Drops {@code tier} and every tier before it from all entries. Called on memory pressure,
+     * from any thread.
+     */
+    void trim(Tier tier) {
+        synchronized (mLock) {
+            Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.releaseWedgeTable()) {
+                    mTierEvictions[Tier.TABLES.ordinal()]++;
+                }
+                if (tier.compareTo(Tier.LAYER_BITMAPS) >= 0) {
+                    mTierEvictions[Tier.LAYER_BITMAPS.ordinal()] += entry.releasePooledBitmaps();
+                }
+                if (tier.compareTo(Tier.TICKS) >= 0) {
+                    if (entry.releaseTickLines()) {
+                        mTierEvictions[Tier.TICKS.ordinal()]++;
+                    }
+                    if (entry.mRefCount == 0) {
+                        iterator.remove();
+                        mEvictions++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints every entry with its references and memory, the bytes held and evicted per tier,
+     * and the cache's hit rate.
+     */
+    void dump(PrintWriter writer, String prefix) {
+        synchronized (mLock) {
+            writer.print(prefix);
+            writer.print("shared cache: entries=");
+            writer.print(mEntries.size());
+            writer.print(" hits=");
+            writer.print(mHits);
+            writer.print(" misses=");
+            writer.print(mMisses);
+            writer.print(" evictions=");
+            writer.print(mEvictions);
+            writer.print(" trims=");
+            writer.println(mTrims);
+
+            long[] tierBytes = new long[Tier.values().length];
+            for (Entry entry : mEntries.values()) {
+                entry.addTierBytes(tierBytes);
+            }
+            for (Tier tier : Tier.values()) {
+                writer.print(prefix);
+                writer.print("  tier ");
+                writer.print(tier);
+                writer.print(": bytes=");
+                writer.print(tierBytes[tier.ordinal()]);
+                writer.print(" evicted=");
+                writer.println(mTierEvictions[tier.ordinal()]);
+            }
+            for (Entry entry : mEntries.values()) {
+                writer.print(prefix);
+                writer.print("  ");
+                entry.dump(writer);
+            }
+        }
+    }
+
+    /**
+     * Everything cached for one surface size and shape.
+     */
+    static final class Entry {
+
+        private final int mWidth;
+        private final int mHeight;
+        private final boolean mRound;
+
+        /* Set up in the constructor and only read afterwards, by any thread. */
+        private final WedgeGeometry mGeometry = new WedgeGeometry();
+
+        private final Object mLock = new Object();
+        /*
+         * Guarded by mLock. The table is null until built and is not modified afterwards, so it
+         * is read outside the lock; a trim drops the reference and leaves readers their copy.
+         */
+        private WedgeTable mWedgeTable;
+        private float[] mTickLines;
+        private final List<Bitmap> mFreeBitmaps = new ArrayList<>();
+        private long mLentBitmapBytes;
+
+        /* Guarded by the cache's lock. */
+        private int mRefCount;
+
+        private Entry(int width, int height, boolean round) {
+            mWidth = width;
+            mHeight = height;
+            mRound = round;
+            mGeometry.setSurfaceSize(width, height);
+            mGeometry.setRound(round);
+        }
+
+        /**
+         * Writes the wedge polygon for the given edge steps into {@code outVertices} from the
+         * shared wedge table, building the table first if needed.
+         *
+         * @return the number of vertices written
+         */
+        int computeWedge(int hourStep, int minuteStep, float[] outVertices) {
+            WedgeTable table;
+            synchronized (mLock) {
+                table = mWedgeTable;
+            }
+            if (table == null) {
+                table = buildWedgeTable();
+            }
+            return table.computeWedge(hourStep, minuteStep, outVertices);
+        }
+
+        /**
+         * Builds a wedge table outside the lock and installs it, unless another thread installed
+         * one meanwhile, in which case that one is returned and the new one dropped.
+         */
+        private WedgeTable buildWedgeTable() {
+            WedgeTable table = new WedgeTable(mGeometry);
+            table.build();
+            synchronized (mLock) {
+                if (mWedgeTable == null) {
+                    mWedgeTable = table;
+                }
+                return mWedgeTable;
+            }
+        }
+
+        /**
+         * Returns the tick lines in the layout of {@link WedgeGeometry#computeTickLines}. The
+         * array is shared and must not be modified.
+         */
+        float[] getTickLines() {
+            synchronized (mLock) {
+                if (mTickLines == null) {
+                    mTickLines = new float[WedgeGeometry.TICK_COUNT * 4];
+                    mGeometry.computeTickLines(mTickLines);
+                }
+                return mTickLines;
+            }
+        }
+
+        /**
+         * Returns a bitmap of the surface's size in {@code config}, from the pool if one was
+         * handed back. Its contents are undefined. It belongs to the caller until it is passed
+         * to {@link #recycleBitmap}.
+         */
+        Bitmap obtainBitmap(Bitmap.Config config) {
+            Bitmap bitmap = null;
+            synchronized (mLock) {
+                for (int i = mFreeBitmaps.size() - 1; i >= 0 && bitmap == null; i--) {
+                    if (mFreeBitmaps.get(i).getConfig() == config) {
+                        bitmap = mFreeBitmaps.remove(i);
+                    }
+                }
+            }
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(mWidth, mHeight, config);
+            }
+            synchronized (mLock) {
+                mLentBitmapBytes += bitmap.getAllocationByteCount();
+            }
+            return bitmap;
+        }
+
+        /**
+         * Hands a bitmap from {@link #obtainBitmap} back to the pool.
+         */
+        void recycleBitmap(Bitmap bitmap) {
+            synchronized (mLock) {
+                mLentBitmapBytes -= bitmap.getAllocationByteCount();
+                mFreeBitmaps.add(bitmap);
+            }
+        }
+
+        /**
+         * Returns the memory held by the entry itself, not counting bitmaps lent out.
+         */
+        long getByteCount() {
+            synchronized (mLock) {
+                long bytes = getWedgeTableByteCount();
+                if (mTickLines != null) {
+                    bytes += mTickLines.length * 4;
+                }
+                for (Bitmap bitmap : mFreeBitmaps) {
+                    bytes += bitmap.getAllocationByteCount();
+                }
+                return bytes;
+            }
+        }
+
+        /**
+         * Adds the bytes the entry holds in each tier, including bitmaps lent out, to
+         * {@code outTierBytes}.
+         */
+        private void addTierBytes(long[] outTierBytes) {
+            synchronized (mLock) {
+                outTierBytes[Tier.TABLES.ordinal()] += getWedgeTableByteCount();
+                long bitmapBytes = mLentBitmapBytes;
+                for (Bitmap bitmap : mFreeBitmaps) {
+                    bitmapBytes += bitmap.getAllocationByteCount();
+                }
+                outTierBytes[Tier.LAYER_BITMAPS.ordinal()] += bitmapBytes;
+                if (mTickLines != null) {
+                    outTierBytes[Tier.TICKS.ordinal()] += mTickLines.length * 4;
+                }
+            }
+        }
+
+        /**
+         * Must hold mLock.
+         */
+        private int getWedgeTableByteCount() {
+            return mWedgeTable == null ? 0 : mWedgeTable.getByteCount();
+        }
+
+        /**
+         * @return whether there was a table to drop
+         */
+        private boolean releaseWedgeTable() {
+            synchronized (mLock) {
+                boolean held = mWedgeTable != null;
+                mWedgeTable = null;
+                return held;
+            }
+        }
+
+        /**
+         * @return the number of bitmaps freed
+         */
+        private int releasePooledBitmaps() {
+            synchronized (mLock) {
+                int count = mFreeBitmaps.size();
+                for (Bitmap bitmap : mFreeBitmaps) {
+                    bitmap.recycle();
+                }
+                mFreeBitmaps.clear();
+                return count;
+            }
+        }
+
+        /**
+         * @return whether there were tick lines to drop
+         */
+        private boolean releaseTickLines() {
+            synchronized (mLock) {
+                boolean held = mTickLines != null;
+                mTickLines = null;
+                return held;
+            }
+        }
+
+        private void dump(PrintWriter writer) {
+            synchronized (mLock) {
+                writer.print(mWidth);
+                writer.print("x");
+                writer.print(mHeight);
+                writer.print(mRound ? " round" : " square");
+                writer.print(": refs=");
+                writer.print(mRefCount);
+                writer.print(" wedge table bytes=");
+                writer.print(getWedgeTableByteCount());
+                writer.print(" pooled bitmaps=");
+                writer.print(mFreeBitmaps.size());
+                writer.print(" bytes=");
+                writer.println(getByteCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.jmalexan.minimalist;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size histogram of durations with power-of-two microsecond buckets. Recording a sample
+ * is a handful of integer operations and never allocates, so it is safe to call on every frame.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+final class TimingHistogram {
+
+    /**
+     * Bucket {@code i} holds samples below 2^i microseconds; the last one also takes everything
+     * longer, about 35 minutes and up.
+     */
+    private static final int BUCKET_COUNT = 32;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    /**
+     * Records one sample.
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets[bucket]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns an upper bound, in microseconds, for the given fraction of the samples, or zero if
+     * there are none.
+     */
+    long percentileMicros(double fraction) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * mCount);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += mBuckets[bucket];
+            if (seen >= rank) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (BUCKET_COUNT - 1);
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            mBuckets[bucket] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * Prints one line summarising the histogram.
+     */
+    void dump(PrintWriter writer, String prefix, String label) {
+        writer.print(prefix);
+        writer.print(label);
+        writer.print(": count=");
+        writer.print(mCount);
+        if (mCount > 0) {
+            writer.print(" mean=");
+            writer.print(TimeUnit.NANOSECONDS.toMicros(mTotalNanos / mCount));
+            writer.print("us p50<=");
+            writer.print(percentileMicros(0.5));
+            writer.print("us p90<=");
+            writer.print(percentileMicros(0.9));
+            writer.print("us p99<=");
+            writer.print(percentileMicros(0.99));
+            writer.print("us max=");
+            writer.print(TimeUnit.NANOSECONDS.toMicros(mMaxNanos));
+            writer.print("us");
+        }
+        writer.println();
+    }
+}
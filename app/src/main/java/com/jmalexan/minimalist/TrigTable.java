@@ -0,0 +1,71 @@
+package com.jmalexan.minimalist;
+
+/**
+ * Sine, cosine and tangent of angles given as whole steps of
+ * {@code 1 / WedgeGeometry.STEPS_PER_DEGREE} of a degree, read from tables instead of computed.
+ * <p>
+ * Only the first quarter turn is stored, 10,801 values per function or about 86 KB in all; the
+ * other quarters follow by symmetry. The tables are built once per process, when the class is
+ * first used.
+ */
+final class TrigTable {
+
+    /**
+     * Number of steps in a quarter turn.
+     */
+    static final int QUARTER = 90 * WedgeGeometry.STEPS_PER_DEGREE;
+
+    private static final int HALF = 2 * QUARTER;
+
+    private static final float[] SINE = new float[QUARTER + 1];
+    private static final float[] TANGENT = new float[QUARTER + 1];
+
+    static {
+        for (int step = 0; step < QUARTER; step++) {
+            double angleRad = Math.toRadians(step / (double) WedgeGeometry.STEPS_PER_DEGREE);
+            SINE[step] = (float) Math.sin(angleRad);
+            TANGENT[step] = (float) Math.tan(angleRad);
+        }
+        SINE[QUARTER] = 1;
+        TANGENT[QUARTER] = Float.POSITIVE_INFINITY;
+    }
+
+    private TrigTable() {
+    }
+
+    /**
+     * Returns the sine of {@code step}, which may be any angle, negative or past a full turn.
+     */
+    static float sin(int step) {
+        step = normalize(step, WedgeGeometry.STEPS);
+        if (step < HALF) {
+            return step <= QUARTER ? SINE[step] : SINE[HALF - step];
+        }
+        step -= HALF;
+        return step <= QUARTER ? -SINE[step] : -SINE[HALF - step];
+    }
+
+    /**
+     * Returns the cosine of {@code step}, which may be any angle. It is reduced before the
+     * quarter turn is added, so that steps near the top of the int range do not overflow.
+     */
+    static float cos(int step) {
+        return sin(normalize(step, WedgeGeometry.STEPS) + QUARTER);
+    }
+
+    /**
+     * Returns the tangent of {@code step}, which is infinite at a quarter turn.
+     */
+    static float tan(int step) {
+        step = normalize(step, HALF);
+        return step <= QUARTER ? TANGENT[step] : -TANGENT[HALF - step];
+    }
+
+    /**
+     * Returns {@code step} reduced to the range from 0 to {@code period} - 1.
+     */
+    private static int normalize(int step, int period) {
+        step %= period;
+        return step < 0 ? step + period : step;
+    }
+}
@@ -0,0 +1,162 @@
+package com.jmalexan.minimalist;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks how often the interactive face updates from the power state of the device, and counts
+ * the wakeups that result.
+ * <p>
+ * The engine feeds it battery and power-save broadcasts and reports every wakeup. Apart from
+ * that it is plain Java.
+ */
+final class UpdateRateGovernor {
+
+    /**
+     * How the interactive face is updated: smooth while charging, tick-paced normally and on the
+     * minute tick when short of battery.
+     */
+    enum Policy {
+        /**
+         * Smooth sweep, still subject to the {@link FrameBudgetGovernor}. Used while charging.
+         */
+        SMOOTH,
+        /**
+         * Tick-paced at most once a second, sleeping through seconds without a visible change.
+         * Used normally, in place of a plain 1 Hz timer: the seconds it skips would redraw the
+         * same pixels, so the face looks exactly as it would at 1 Hz.
+         */
+        ADAPTIVE,
+        /**
+         * No interactive timer; the face only redraws on the system's minute tick and on mode
+         * changes. Used on low battery and in power-save mode. Redrawing only on a visible
+         * change is what {@link #ADAPTIVE} does already, so as the low battery policy it would
+         * save nothing; this one gives up the minute edge's movement within the minute, six
+         * degrees, for the timer wakeups that remain.
+         */
+        COARSE
+    }
+
+    /**
+     * Battery level, in percent, below which the coarse policy is used. Power-save mode uses
+     * it at any level.
+     */
+    static final int LOW_BATTERY_PERCENT = 15;
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private int mBatteryPercent = 100;
+    private boolean mCharging;
+    private boolean mPowerSaveMode;
+    private Policy mPolicy = Policy.ADAPTIVE;
+    private long mPolicyChanges;
+
+    /*
+     * Wakeups per minute over the last hour, as a ring indexed by minute. Written on the main
+     * thread only; volatile so that the dump thread never reads a torn minute.
+     */
+    private final int[] mWakeupsPerMinute = new int[MINUTES_PER_HOUR];
+    private volatile long mCurrentMinute = -1;
+
+    Policy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Updates the battery state from {@code Intent.ACTION_BATTERY_CHANGED} extras.
+     *
+     * @return whether the policy changed
+     */
+    boolean setBatteryState(int level, int scale, boolean charging) {
+        if (level >= 0 && scale > 0) {
+            mBatteryPercent = level * 100 / scale;
+        }
+        mCharging = charging;
+        return updatePolicy();
+    }
+
+    /**
+     * @return whether the policy changed
+     */
+    boolean setPowerSaveMode(boolean powerSaveMode) {
+        mPowerSaveMode = powerSaveMode;
+        return updatePolicy();
+    }
+
+    private boolean updatePolicy() {
+        Policy policy;
+        if (mCharging) {
+            policy = Policy.SMOOTH;
+        } else if (mPowerSaveMode || mBatteryPercent < LOW_BATTERY_PERCENT) {
+            policy = Policy.COARSE;
+        } else {
+            policy = Policy.ADAPTIVE;
+        }
+        if (policy == mPolicy) {
+            return false;
+        }
+        mPolicy = policy;
+        mPolicyChanges++;
+        return true;
+    }
+
+    /**
+     * Counts one wakeup of the face at {@code elapsedRealtimeMs}.
+     */
+    void recordWakeup(long elapsedRealtimeMs) {
+        advanceTo(elapsedRealtimeMs / MINUTE_MS);
+        mWakeupsPerMinute[(int) (mCurrentMinute % MINUTES_PER_HOUR)]++;
+    }
+
+    /**
+     * Returns the number of wakeups in the hour up to {@code elapsedRealtimeMs}. It only reads
+     * the ring, skipping the minutes that have dropped out of the hour instead of clearing them,
+     * so it is safe to call from the dump thread; the count may be a wakeup out of date.
+     */
+    int getWakeupsInLastHour(long elapsedRealtimeMs) {
+        long currentMinute = mCurrentMinute;
+        if (currentMinute < 0) {
+            return 0;
+        }
+        long firstMinute = Math.max(currentMinute,
+                elapsedRealtimeMs / MINUTE_MS) - MINUTES_PER_HOUR + 1;
+        int wakeups = 0;
+        for (long m = Math.max(firstMinute, 0); m <= currentMinute; m++) {
+            wakeups += mWakeupsPerMinute[(int) (m % MINUTES_PER_HOUR)];
+        }
+        return wakeups;
+    }
+
+    /**
+     * Moves the ring forward to {@code minute}, clearing the minutes that passed.
+     */
+    private void advanceTo(long minute) {
+        if (mCurrentMinute < 0 || minute - mCurrentMinute >= MINUTES_PER_HOUR) {
+            Arrays.fill(mWakeupsPerMinute, 0);
+        } else {
+            for (long m = mCurrentMinute + 1; m <= minute; m++) {
+                mWakeupsPerMinute[(int) (m % MINUTES_PER_HOUR)] = 0;
+            }
+        }
+        if (minute > mCurrentMinute) {
+            mCurrentMinute = minute;
+        }
+    }
+
+    void dump(PrintWriter writer, String prefix, long elapsedRealtimeMs) {
+        writer.print(prefix);
+        writer.print("update policy=");
+        writer.print(mPolicy);
+        writer.print(" battery=");
+        writer.print(mBatteryPercent);
+        writer.print("%");
+        writer.print(mCharging ? " charging" : "");
+        writer.print(mPowerSaveMode ? " power-save" : "");
+        writer.print(" policy changes=");
+        writer.print(mPolicyChanges);
+        writer.print(" wakeups/hour=");
+        writer.println(getWakeupsInLastHour(elapsedRealtimeMs));
+    }
+}
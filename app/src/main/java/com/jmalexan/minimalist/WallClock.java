@@ -0,0 +1,114 @@
+package com.jmalexan.minimalist;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits epoch milliseconds into the hour, minute and second shown on a 12-hour dial, using
+ * integer arithmetic only.
+ * <p>
+ * The zone's UTC offset is cached together with the span of time over which it holds: from the
+ * moment it was looked up until the next offset transition, or a day later if there is none
+ * sooner. The offset is only looked up again once the time leaves that span or the zone is
+ * replaced, so per-frame decomposition never touches {@link java.util.Calendar}.
+ */
+final class WallClock {
+
+    /**
+     * How far ahead to look for the next offset transition. Zones do not change offset twice
+     * within a day in practice, so one probe at the end of the window finds a transition in it.
+     */
+    private static final long TRANSITION_WINDOW_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final long MILLIS_PER_HALF_DAY = TimeUnit.HOURS.toMillis(12);
+
+    private TimeZone mTimeZone;
+    private int mOffsetMs;
+    private long mValidFromMs;
+    private long mValidUntilMs;
+    private int mHour;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+
+    WallClock(TimeZone timeZone) {
+        setTimeZone(timeZone);
+    }
+
+    /**
+     * Replaces the zone, dropping the cached offset.
+     */
+    void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mValidFromMs = Long.MAX_VALUE;
+        mValidUntilMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * Decomposes {@code timeMs} into the fields returned by the getters.
+     */
+    void setTimeInMillis(long timeMs) {
+        if (timeMs < mValidFromMs || timeMs >= mValidUntilMs) {
+            refreshOffset(timeMs);
+        }
+
+        long millisOfHalfDay = (timeMs + mOffsetMs) % MILLIS_PER_HALF_DAY;
+        if (millisOfHalfDay < 0) {
+            millisOfHalfDay += MILLIS_PER_HALF_DAY;
+        }
+        int secondOfHalfDay = (int) (millisOfHalfDay / 1000);
+        mHour = secondOfHalfDay / 3600;
+        mMinute = (secondOfHalfDay / 60) % 60;
+        mSecond = secondOfHalfDay % 60;
+        mMillisecond = (int) (millisOfHalfDay % 1000);
+    }
+
+    /**
+     * Returns the hour on the 12-hour dial, 0 to 11, like {@code Calendar.HOUR}.
+     */
+    int getHour() {
+        return mHour;
+    }
+
+    int getMinute() {
+        return mMinute;
+    }
+
+    int getSecond() {
+        return mSecond;
+    }
+
+    int getMillisecond() {
+        return mMillisecond;
+    }
+
+    /**
+     * Returns the number of seconds since twelve o'clock on the 12-hour dial.
+     */
+    int getDialSecond() {
+        return WedgeGeometry.dialSecond(mHour, mMinute, mSecond);
+    }
+
+    /**
+     * Looks up the offset at {@code timeMs} and how long it stays in force. If the offset differs
+     * at the end of the window, the transition instant is found to the millisecond by bisection.
+     */
+    private void refreshOffset(long timeMs) {
+        int offset = mTimeZone.getOffset(timeMs);
+        long validUntil = timeMs + TRANSITION_WINDOW_MS;
+        if (mTimeZone.getOffset(validUntil) != offset) {
+            long low = timeMs;
+            while (validUntil - low > 1) {
+                long middle = low + (validUntil - low) / 2;
+                if (mTimeZone.getOffset(middle) == offset) {
+                    low = middle;
+                } else {
+                    validUntil = middle;
+                }
+            }
+        }
+        mOffsetMs = offset;
+        mValidFromMs = timeMs;
+        mValidUntilMs = validUntil;
+    }
+}
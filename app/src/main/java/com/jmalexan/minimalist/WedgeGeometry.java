@@ -0,0 +1,394 @@
+package com.jmalexan.minimalist;
+
+/**
+ * Geometry of the watch face: the wedge swept from the hour edge clockwise to the minute edge,
+ * and the hour ticks around the dial. Angles are clockwise from twelve o'clock, in whole steps
+ * of 1/{@link #STEPS_PER_DEGREE} of a degree.
+ * <p>
+ * Steps are fine enough to hold every edge position exactly: the hour edge advances one step per
+ * second and the minute edge twelve, so comparisons between angles are exact integer ones and
+ * the trigonometry comes from {@link TrigTable}.
+ * <p>
+ * This class has no Android dependencies so that the per-frame maths can be run and profiled on
+ * a plain JVM. Results are written into caller-supplied arrays, so nothing here allocates once
+ * the caller owns its buffers.
+ */
+final class WedgeGeometry {
+
+    /**
+     * Number of hour ticks around the dial.
+     */
+    static final int TICK_COUNT = 12;
+
+    /**
+     * Number of seconds on the 12-hour dial.
+     */
+    static final int DIAL_SECONDS = 12 * 60 * 60;
+
+    /**
+     * Resolution of angles, in steps per degree.
+     */
+    static final int STEPS_PER_DEGREE = 120;
+
+    /**
+     * Number of steps in a full turn.
+     */
+    static final int STEPS = 360 * STEPS_PER_DEGREE;
+
+    /**
+     * Number of sides of the polygon that stands in for the dial on round screens.
+     */
+    static final int ROUND_SIDES = 16;
+
+    /**
+     * Largest number of vertices {@link #computeWedge} emits: the center, the two edge points on
+     * the border and the border corners passed in between, up to four on a square screen and
+     * {@link #ROUND_SIDES} on a round one.
+     */
+    static final int MAX_WEDGE_VERTICES = 3 + ROUND_SIDES;
+
+    /**
+     * Steps between two ticks.
+     */
+    private static final int TICK_STEPS = STEPS / TICK_COUNT;
+
+    /**
+     * Steps covered by one side of the round dial's polygon.
+     */
+    private static final int ROUND_SIDE_STEPS = STEPS / ROUND_SIDES;
+
+    /**
+     * Length of a tick, in pixels, measured inwards from the edge of the dial.
+     */
+    private static final float TICK_LENGTH = 10f;
+
+    private float mCenterX;
+    private float mCenterY;
+    private float mWidth;
+    private float mHeight;
+    /* Angles of the screen corners, clockwise from the top right one. */
+    private final int[] mCornerSteps = new int[4];
+    /* The screen corners as x, y pairs, in the same order. */
+    private final float[] mCornerVertices = new float[4 * 2];
+    private boolean mRound;
+    /* Radius of the dial's circle on round screens. */
+    private float mRadius;
+    /* Corners of the round dial's polygon as x, y pairs, clockwise from just past twelve. */
+    private final float[] mPolygonVertices = new float[ROUND_SIDES * 2];
+
+    /**
+     * Sets the size of the surface the geometry is computed for, which may be any rectangle.
+     */
+    void setSurfaceSize(int width, int height) {
+        mCenterX = width / 2f;
+        mCenterY = height / 2f;
+        mWidth = width;
+        mHeight = height;
+        updateCorners();
+        updatePolygon();
+    }
+
+    /**
+     * Finds the angles of the screen corners. The top right one is at atan(width / height), which
+     * is only 45 degrees on a square screen; the others mirror it. Its step is the first whose
+     * ray does not leave through the top, decided with the tangents {@link #borderPoint} uses, so
+     * that no border point lands on a side past its end. Unless the ray hits the corner exactly,
+     * the mirrored corners are one step later, for the same reason.
+     */
+    private void updateCorners() {
+        int low = 0;
+        int high = TrigTable.QUARTER;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (TrigTable.tan(middle) * mCenterY < mCenterX) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int cornerStep = low;
+        int mirrorShift = TrigTable.tan(cornerStep) * mCenterY == mCenterX ? 0 : 1;
+        mCornerSteps[0] = cornerStep;
+        mCornerSteps[1] = STEPS / 2 - cornerStep + mirrorShift;
+        mCornerSteps[2] = STEPS / 2 + cornerStep;
+        mCornerSteps[3] = STEPS - cornerStep + mirrorShift;
+
+        mCornerVertices[0] = mWidth;
+        mCornerVertices[1] = 0;
+        mCornerVertices[2] = mWidth;
+        mCornerVertices[3] = mHeight;
+        mCornerVertices[4] = 0;
+        mCornerVertices[5] = mHeight;
+        mCornerVertices[6] = 0;
+        mCornerVertices[7] = 0;
+    }
+
+    /**
+     * Sets whether the screen is round. On a round screen the wedge is bounded by a regular
+     * polygon circumscribed about the dial instead of by the screen rectangle, so that far fewer
+     * of its pixels fall outside the visible circle.
+     */
+    void setRound(boolean round) {
+        mRound = round;
+        updatePolygon();
+    }
+
+    boolean isRound() {
+        return mRound;
+    }
+
+    /**
+     * Places the polygon's sides so that each one touches the circle at its middle, with the
+     * middles at multiples of {@link #ROUND_SIDE_STEPS} and the twelve o'clock side flat. The
+     * corners then lie at radius / cos(half a side) and the polygon fits the surface's bounding
+     * square exactly.
+     */
+    private void updatePolygon() {
+        mRadius = Math.min(mCenterX, mCenterY);
+        float cornerRadius = mRadius / TrigTable.cos(ROUND_SIDE_STEPS / 2);
+        for (int i = 0; i < ROUND_SIDES; i++) {
+            int step = ROUND_SIDE_STEPS / 2 + i * ROUND_SIDE_STEPS;
+            mPolygonVertices[i * 2] = mCenterX + TrigTable.sin(step) * cornerRadius;
+            mPolygonVertices[i * 2 + 1] = mCenterY - TrigTable.cos(step) * cornerRadius;
+        }
+    }
+
+    float getCenterX() {
+        return mCenterX;
+    }
+
+    float getCenterY() {
+        return mCenterY;
+    }
+
+    /**
+     * Returns the number of seconds since twelve o'clock on the 12-hour dial.
+     */
+    static int dialSecond(int hour, int minute, int second) {
+        return (hour * 60 + minute) * 60 + second;
+    }
+
+    /**
+     * Returns the step of the hour edge, 30 degrees per hour plus the fraction of the hour that
+     * has passed. At one step per second it equals the number of seconds since twelve o'clock.
+     */
+    static int hourStep(int hour, int minute, int second) {
+        return dialSecond(hour, minute, second);
+    }
+
+    /**
+     * Returns the step of the minute edge, 6 degrees per minute and a tenth of a degree per
+     * second.
+     */
+    static int minuteStep(int minute, int second) {
+        return (minute * 60 + second) * 12;
+    }
+
+    /**
+     * Returns the step of the minute edge at the finest resolution steps allow, a twelfth of a
+     * second, for the smooth sweep.
+     */
+    static int minuteStep(int minute, int second, int millisecond) {
+        return ((minute * 60 + second) * 1000 + millisecond) * 12 / 1000;
+    }
+
+    /**
+     * Returns the step of the hour edge at {@code dialSecond}, as returned by
+     * {@link #dialSecond}. At one step per second the two are the same.
+     */
+    static int hourStepOfDialSecond(int dialSecond) {
+        return dialSecond;
+    }
+
+    /**
+     * Returns the step of the minute edge at {@code dialSecond}, as returned by
+     * {@link #dialSecond}.
+     */
+    static int minuteStepOfDialSecond(int dialSecond) {
+        return minuteStep((dialSecond / 60) % 60, dialSecond % 60);
+    }
+
+    /**
+     * Returns the angle of {@code step} in degrees.
+     */
+    static float toDegrees(int step) {
+        return step / (float) STEPS_PER_DEGREE;
+    }
+
+    /**
+     * Writes the wedge polygon into {@code outVertices} as x, y pairs: the center, the hour edge
+     * on the border, the border corners passed on the way round and the minute edge on the
+     * border.
+     *
+     * @param outVertices array of at least {@code MAX_WEDGE_VERTICES * 2} floats
+     * @return the number of vertices written
+     */
+    int computeWedge(int hourStep, int minuteStep, float[] outVertices) {
+        outVertices[0] = mCenterX;
+        outVertices[1] = mCenterY;
+
+        int offset = borderPoint(hourStep, outVertices, 2);
+        offset = addCornersBetween(hourStep, sweepEnd(hourStep, minuteStep), outVertices, offset);
+        offset = borderPoint(minuteStep, outVertices, offset);
+        return offset / 2;
+    }
+
+    /**
+     * Writes the indices of the ticks that lie strictly inside the wedge into {@code outTicks},
+     * in clockwise order starting after the hour edge. The covered ticks always form one run of
+     * consecutive indices, wrapping from 11 to 0 past twelve o'clock.
+     *
+     * @param outTicks array of at least {@link #TICK_COUNT} ints
+     * @return the number of ticks written
+     */
+    static int computeCoveredTicks(int hourStep, int minuteStep, int[] outTicks) {
+        int toStep = sweepEnd(hourStep, minuteStep);
+        int firstTick = hourStep / TICK_STEPS + 1;
+        int lastTick = (toStep - 1) / TICK_STEPS;
+        int tickCount = Math.max(0, lastTick - firstTick + 1);
+
+        for (int i = 0; i < tickCount; i++) {
+            outTicks[i] = (firstTick + i) % TICK_COUNT;
+        }
+        return tickCount;
+    }
+
+    /**
+     * Writes the start and end point of every tick into {@code outLines} as x0, y0, x1, y1 per
+     * tick, in the layout expected by {@code Canvas.drawLines}.
+     *
+     * @param outLines array of at least {@code TICK_COUNT * 4} floats
+     */
+    void computeTickLines(float[] outLines) {
+        /* The dial is the largest circle that fits, so ticks stay on screen on any rectangle. */
+        float innerTickRadius = mRadius - TICK_LENGTH;
+        float outerTickRadius = mRadius;
+        for (int tickIndex = 0; tickIndex < TICK_COUNT; tickIndex++) {
+            float sin = TrigTable.sin(tickIndex * TICK_STEPS);
+            float cos = -TrigTable.cos(tickIndex * TICK_STEPS);
+            int offset = tickIndex * 4;
+            outLines[offset] = mCenterX + sin * innerTickRadius;
+            outLines[offset + 1] = mCenterY + cos * innerTickRadius;
+            outLines[offset + 2] = mCenterX + sin * outerTickRadius;
+            outLines[offset + 3] = mCenterY + cos * outerTickRadius;
+        }
+    }
+
+    /**
+     * Returns the step at which a clockwise sweep from {@code fromStep} reaches {@code toStep},
+     * adding a full turn when the sweep wraps past twelve o'clock.
+     */
+    static int sweepEnd(int fromStep, int toStep) {
+        return fromStep > toStep ? toStep + STEPS : toStep;
+    }
+
+    /**
+     * Writes the point where a ray from the center at {@code step} leaves the dial's border: the
+     * screen rectangle, or the polygon around the circle on round screens.
+     *
+     * @param step angle of the ray, from 0 to {@link #STEPS} - 1
+     * @return the offset just past the written point
+     */
+    int borderPoint(int step, float[] out, int offset) {
+        if (mRound) {
+            /*
+             * The ray meets the side whose middle is nearest to it, and that middle is at the
+             * circle's radius from the center.
+             */
+            int sideMiddle = (step + ROUND_SIDE_STEPS / 2) / ROUND_SIDE_STEPS * ROUND_SIDE_STEPS;
+            float distance = mRadius / TrigTable.cos(step - sideMiddle);
+            out[offset] = mCenterX + TrigTable.sin(step) * distance;
+            out[offset + 1] = mCenterY - TrigTable.cos(step) * distance;
+            return offset + 2;
+        }
+
+        /*
+         * The corner angles tell which side the ray leaves through, and one tangent gives the
+         * distance along that side from its middle.
+         */
+        float x;
+        float y;
+        if (step < mCornerSteps[0] || step >= mCornerSteps[3]) {
+            x = mCenterX + TrigTable.tan(step) * mCenterY;
+            y = 0;
+        } else if (step < mCornerSteps[1]) {
+            x = mWidth;
+            y = mCenterY - TrigTable.tan(TrigTable.QUARTER - step) * mCenterX;
+        } else if (step < mCornerSteps[2]) {
+            x = mCenterX - TrigTable.tan(step) * mCenterY;
+            y = mHeight;
+        } else {
+            x = 0;
+            y = mCenterY + TrigTable.tan(3 * TrigTable.QUARTER - step) * mCenterX;
+        }
+        /*
+         * The corners keep x within the top and bottom sides exactly. The tangents of the left
+         * and right sides are not exact reciprocals of those, so y may be a rounding error past
+         * a corner.
+         */
+        out[offset] = x;
+        out[offset + 1] = Math.min(Math.max(y, 0), mHeight);
+        return offset + 2;
+    }
+
+    /**
+     * Writes the border corners that lie strictly between the two angles, in clockwise order:
+     * the screen corners (at 45, 135, 225 and 315 degrees only on a square screen), or the
+     * polygon's corners on round screens. {@code toStep} may exceed {@link #STEPS} when the
+     * wedge wraps past twelve o'clock, in which case it is at most a full turn past
+     * {@code fromStep}.
+     *
+     * @return the offset just past the last written corner
+     */
+    int addCornersBetween(int fromStep, int toStep, float[] out, int offset) {
+        if (mRound) {
+            return addPolygonCornersBetween(fromStep, toStep, out, offset);
+        }
+
+        /* Find the first corner past fromStep, counting the corners of the next turn too. */
+        int corner = 0;
+        while (corner < 4 && mCornerSteps[corner] <= fromStep) {
+            corner++;
+        }
+        for (; cornerStep(corner) < toStep; corner++) {
+            int index = corner % 4;
+            out[offset] = mCornerVertices[index * 2];
+            out[offset + 1] = mCornerVertices[index * 2 + 1];
+            offset += 2;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the angle of screen corner {@code corner}, where corners 4 and up are those of
+     * the following turns.
+     */
+    private int cornerStep(int corner) {
+        return mCornerSteps[corner % 4] + STEPS * (corner / 4);
+    }
+
+    private int addPolygonCornersBetween(int fromStep, int toStep, float[] out, int offset) {
+        /* Corner i is at (i + 0.5) sides; start at the first one past fromStep. */
+        int corner = (fromStep + ROUND_SIDE_STEPS / 2) / ROUND_SIDE_STEPS;
+        for (; corner * ROUND_SIDE_STEPS + ROUND_SIDE_STEPS / 2 < toStep; corner++) {
+            int index = corner % ROUND_SIDES;
+            out[offset] = mPolygonVertices[index * 2];
+            out[offset + 1] = mPolygonVertices[index * 2 + 1];
+            offset += 2;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the area of a simple polygon given as x, y pairs, by the shoelace formula.
+     */
+    static float polygonArea(float[] vertices, int vertexCount) {
+        double twiceArea = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            int next = (i + 1) % vertexCount;
+            twiceArea += vertices[i * 2] * vertices[next * 2 + 1]
+                    - vertices[next * 2] * vertices[i * 2 + 1];
+        }
+        return (float) Math.abs(twiceArea / 2);
+    }
+}
@@ -0,0 +1,70 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Fills the wedge polygon produced by {@link WedgeGeometry#computeWedge}. The polygon starts at
+ * the center and every other vertex lies on the border in clockwise order, so it is star-shaped
+ * around its first vertex and can be drawn either as a general path or as a triangle fan.
+ */
+interface WedgeRenderer {
+
+    /**
+     * Returns a short name for the renderer, used in the dump output and to select it.
+     */
+    String getName();
+
+    /**
+     * Fills the polygon given as x, y pairs in {@code vertices}.
+     */
+    void draw(Canvas canvas, float[] vertices, int vertexCount, Paint paint);
+
+    /**
+     * Builds a {@link Path} and fills it, going through Skia's generic path rasterizer. This is
+     * the only renderer that anti-aliases the wedge edges.
+     */
+    final class PathRenderer implements WedgeRenderer {
+        static final String NAME = "path";
+
+        /* Rewound and rebuilt every frame so that drawing never allocates. */
+        private final Path mPath = new Path();
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float[] vertices, int vertexCount, Paint paint) {
+            mPath.rewind();
+            mPath.moveTo(vertices[0], vertices[1]);
+            for (int i = 1; i < vertexCount; i++) {
+                mPath.lineTo(vertices[i * 2], vertices[i * 2 + 1]);
+            }
+            mPath.close();
+            canvas.drawPath(mPath, paint);
+        }
+    }
+
+    /**
+     * Draws the polygon directly as a triangle fan around the center with
+     * {@link Canvas#drawVertices}, skipping path construction and the path mask cache. Only the
+     * paint's color is used and the edges are not anti-aliased.
+     */
+    final class VerticesRenderer implements WedgeRenderer {
+        static final String NAME = "vertices";
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float[] vertices, int vertexCount, Paint paint) {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLE_FAN, vertexCount * 2, vertices, 0,
+                    null, 0, null, 0, null, 0, 0, paint);
+        }
+    }
+}
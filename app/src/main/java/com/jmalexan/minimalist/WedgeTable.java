@@ -0,0 +1,95 @@
+package com.jmalexan.minimalist;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Precomputed border points for every angle either wedge edge can take, so that building the
+ * wedge for a frame needs no trigonometry at all.
+ * <p>
+ * Both edges move in whole steps of 1/120 of a degree, see {@link WedgeGeometry}: the hour edge
+ * advances one step per second and the minute edge twelve. The table therefore holds one border
+ * point per step, 43,200 points in all, in a single direct buffer of about 340 KB. It does not
+ * depend on the time, only on the surface size, and is rebuilt lazily after
+ * {@link #invalidate()}.
+ */
+final class WedgeTable {
+
+    private final WedgeGeometry mGeometry;
+    private final float[] mScratchPoint = new float[2];
+    private FloatBuffer mBorderPoints;
+    private boolean mBuilt;
+
+    WedgeTable(WedgeGeometry geometry) {
+        mGeometry = geometry;
+    }
+
+    /**
+     * Marks the table as stale, typically because the surface size changed. The buffer itself is
+     * kept and refilled on the next use.
+     */
+    void invalidate() {
+        mBuilt = false;
+    }
+
+    /**
+     * Drops the buffer, e.g. under memory pressure. The table is allocated and built again on
+     * the next use.
+     */
+    void release() {
+        mBorderPoints = null;
+        mBuilt = false;
+    }
+
+    boolean isBuilt() {
+        return mBuilt;
+    }
+
+    /**
+     * Returns the number of bytes held by the table, or zero if it was never built.
+     */
+    int getByteCount() {
+        return mBorderPoints == null ? 0 : mBorderPoints.capacity() * 4;
+    }
+
+    /**
+     * Writes the wedge polygon for the given edge steps into {@code outVertices}, in the same
+     * layout as {@link WedgeGeometry#computeWedge}, building the table first if needed.
+     *
+     * @return the number of vertices written
+     */
+    int computeWedge(int hourStep, int minuteStep, float[] outVertices) {
+        if (!mBuilt) {
+            build();
+        }
+
+        outVertices[0] = mGeometry.getCenterX();
+        outVertices[1] = mGeometry.getCenterY();
+        outVertices[2] = mBorderPoints.get(hourStep * 2);
+        outVertices[3] = mBorderPoints.get(hourStep * 2 + 1);
+        int offset = mGeometry.addCornersBetween(hourStep,
+                WedgeGeometry.sweepEnd(hourStep, minuteStep), outVertices, 4);
+        outVertices[offset] = mBorderPoints.get(minuteStep * 2);
+        outVertices[offset + 1] = mBorderPoints.get(minuteStep * 2 + 1);
+        return offset / 2 + 1;
+    }
+
+    /**
+     * Fills the table now rather than on the first use. Once built it is only read, so a built
+     * table may be shared between threads.
+     */
+    void build() {
+        if (mBorderPoints == null) {
+            mBorderPoints = ByteBuffer.allocateDirect(WedgeGeometry.STEPS * 2 * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        }
+        for (int step = 0; step < WedgeGeometry.STEPS; step++) {
+            mGeometry.borderPoint(step, mScratchPoint, 0);
+            mBorderPoints.put(step * 2, mScratchPoint[0]);
+            mBorderPoints.put(step * 2 + 1, mScratchPoint[1]);
+        }
+        mBuilt = true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.jmalexan.minimalist;
+
+import android.os.SystemClock;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RoboSettings;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a real {@link Minimalist} engine through a simulated day, as fast as the host allows,
+ * and prints the frames it rendered, its wakeups, and the bytes it allocated and CPU time it
+ * spent in every simulated hour.
+ * <p>
+ * All loopers run on Robolectric's global scheduler: the main one and the engine's render and
+ * prerender threads. Their work therefore runs on the test thread, in simulated time, and the
+ * thread's allocation and CPU counters measure the face itself, plus Robolectric's scheduling.
+ * Drawing is discarded by the shadows, so pixels are not rasterized. The engine reads the time
+ * from a {@link Clock} that follows the scheduler.
+ * <p>
+ * The day follows a fixed script: the screen is off from midnight to seven, then ambient with a
+ * short interactive glance every few minutes until the end of the day. The test plays the
+ * system's part, reporting visibility and ambient changes and ticking the minute while ambient.
+ * The day starts at local midnight in the default time zone.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowDiscardingCanvas.class, ShadowDiscardingPath.class})
+public class DaySimulationTest {
+
+    private static final int SIZE = 454;
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Day that is simulated, 1 June 2018 at midnight UTC, shifted to local midnight at run time.
+     */
+    private static final long SIMULATED_DAY_UTC_MS = 1527811200000L;
+
+    /* The script of the simulated day. */
+    private static final int WAKE_UP_HOUR = 7;
+    private static final long GLANCE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long GLANCE_DURATION_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private CanvasWatchFaceService.Engine mEngine;
+    /* Wall-clock time and uptime at the start of the simulated day. */
+    private long mDayStartMs;
+    private long mDayStartUptimeMs;
+
+    @Before
+    public void setUp() {
+        RoboSettings.setUseGlobalScheduler(true);
+        /*
+         * Wakeups are counted per minute of uptime, so the simulated hours are lined up with
+         * whole hours of it.
+         */
+        Robolectric.getForegroundThreadScheduler().advanceTo(HOUR_MS);
+        mDayStartUptimeMs = SystemClock.uptimeMillis();
+        mDayStartMs = SIMULATED_DAY_UTC_MS - TimeZone.getDefault().getOffset(SIMULATED_DAY_UTC_MS);
+
+        Minimalist service = Robolectric.setupService(Minimalist.class);
+        service.setClock(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mDayStartMs + SystemClock.uptimeMillis() - mDayStartUptimeMs;
+            }
+        });
+        mEngine = service.onCreateEngine();
+        mEngine.onCreate(mEngine.getSurfaceHolder());
+        mEngine.onSurfaceChanged(mEngine.getSurfaceHolder(), 0, SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.onDestroy();
+        RoboSettings.setUseGlobalScheduler(false);
+    }
+
+    @Test
+    public void simulateDay() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.println("hour  frames  wakeups  alloc_bytes  cpu_us");
+        long totalFrames = 0;
+        long totalWakeups = 0;
+        long wallStartNanos = System.nanoTime();
+        for (int hour = 0; hour < 24; hour++) {
+            long framesBefore = frameCount();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long cpuBefore = threads.getCurrentThreadCpuTime();
+
+            long hourStartMs = hour * HOUR_MS;
+            if (hour == WAKE_UP_HOUR) {
+                advanceTo(hourStartMs);
+                mEngine.onAmbientModeChanged(true);
+                setVisible(true);
+            }
+            if (hour >= WAKE_UP_HOUR) {
+                simulateHour(hourStartMs);
+            }
+            /* The last moment of the hour, so that its wakeups are exactly the last hour's. */
+            advanceTo(hourStartMs + HOUR_MS - 1);
+
+            long frames = frameCount() - framesBefore;
+            int wakeups = updateRateGovernor().getWakeupsInLastHour(
+                    SystemClock.elapsedRealtime());
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            long cpuNanos = threads.getCurrentThreadCpuTime() - cpuBefore;
+            System.out.println(String.format("%4d  %6d  %7d  %11d  %6d", hour, frames, wakeups,
+                    allocated, TimeUnit.NANOSECONDS.toMicros(cpuNanos)));
+            totalFrames += frames;
+            totalWakeups += wakeups;
+
+            if (hour < WAKE_UP_HOUR) {
+                assertEquals("frames while the screen is off", 0, frames);
+                assertEquals("wakeups while the screen is off", 0, wakeups);
+            } else {
+                assertTrue("frames while the screen is on", frames > 0);
+                assertTrue("wakeups while the screen is on", wakeups > 0);
+            }
+        }
+        System.out.println(String.format("day: frames=%d wakeups=%d simulated in %d ms",
+                totalFrames, totalWakeups,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStartNanos)));
+    }
+
+    /**
+     * Simulates one hour with the screen on, starting at {@code hourStartMs} into the day:
+     * ambient minute ticks with an interactive glance every few minutes.
+     */
+    private void simulateHour(long hourStartMs) {
+        long hourEndMs = hourStartMs + HOUR_MS;
+        for (long glanceMs = hourStartMs; glanceMs < hourEndMs; glanceMs += GLANCE_INTERVAL_MS) {
+            advanceTo(glanceMs);
+            mEngine.onAmbientModeChanged(false);
+            advanceTo(glanceMs + GLANCE_DURATION_MS);
+            mEngine.onAmbientModeChanged(true);
+
+            long glanceEndMs = Math.min(glanceMs + GLANCE_INTERVAL_MS, hourEndMs);
+            long tickMs = ((glanceMs + GLANCE_DURATION_MS) / MINUTE_MS + 1) * MINUTE_MS;
+            for (; tickMs < glanceEndMs; tickMs += MINUTE_MS) {
+                advanceTo(tickMs);
+                mEngine.onTimeTick();
+            }
+        }
+    }
+
+    /**
+     * Runs every looper up to {@code dayMs} into the simulated day.
+     */
+    private void advanceTo(long dayMs) {
+        Robolectric.getForegroundThreadScheduler().advanceTo(mDayStartUptimeMs + dayMs);
+    }
+
+    /**
+     * Does what the wallpaper service does when the screen turns on or off, short of touching
+     * the surface, which is not attached here.
+     */
+    private void setVisible(boolean visible) {
+        ReflectionHelpers.setField(mEngine, "mReportedVisible", visible);
+        mEngine.onVisibilityChanged(visible);
+    }
+
+    /**
+     * Returns the frames rendered so far, by the render thread and the ambient prerenderer.
+     */
+    private long frameCount() {
+        RenderThread renderThread = ReflectionHelpers.getField(mEngine, "mRenderThread");
+        AmbientPrerenderer prerenderer = ReflectionHelpers.getField(mEngine, "mAmbientPrerenderer");
+        return renderThread.getRenderer().getFrameCount() + prerenderer.getFrameCount();
+    }
+
+    private UpdateRateGovernor updateRateGovernor() {
+        return ReflectionHelpers.getField(mEngine, "mUpdateRate");
+    }
+}
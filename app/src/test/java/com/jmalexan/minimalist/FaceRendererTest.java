@@ -0,0 +1,115 @@
+package com.jmalexan.minimalist;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Renders many frames of one surface size the way the {@link RenderThread} does, into frames of
+ * a {@link FrameHandoff}, and checks that once the caches are built a frame allocates nothing.
+ * Drawing is discarded by the shadows, so that only the renderer's own allocations are counted.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowDiscardingCanvas.class, ShadowDiscardingPath.class})
+public class FaceRendererTest {
+
+    private static final int SIZE = 454;
+
+    /* Frames rendered before measuring, enough for every cache to be built. */
+    private static final int WARM_UP_FRAMES = 100;
+    private static final int MEASURED_FRAMES = 5000;
+
+    private final PaintSet mPaints = new PaintSet("interactive", true, false);
+    private final FrameState mState = new FrameState();
+    private FaceRenderer mRenderer;
+    private FrameHandoff mHandoff;
+
+    @Before
+    public void setUp() {
+        mRenderer = new FaceRenderer();
+        mHandoff = new FrameHandoff();
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+        mHandoff.releaseRenderSide();
+        mHandoff.releaseMainSide();
+    }
+
+    @Test
+    public void pathRendererDoesNotAllocate() {
+        assertRenderDoesNotAllocate(WedgeRenderer.PathRenderer.NAME, false, false);
+    }
+
+    @Test
+    public void verticesRendererDoesNotAllocate() {
+        assertRenderDoesNotAllocate(WedgeRenderer.VerticesRenderer.NAME, false, false);
+    }
+
+    @Test
+    public void wedgeTableDoesNotAllocate() {
+        assertRenderDoesNotAllocate(WedgeRenderer.VerticesRenderer.NAME, true, false);
+    }
+
+    @Test
+    public void smoothFramesDoNotAllocate() {
+        assertRenderDoesNotAllocate(WedgeRenderer.PathRenderer.NAME, false, true);
+    }
+
+    /**
+     * Renders frames one second apart, or a sixtieth of a second apart if {@code smooth}, so that
+     * the layer is redrawn whenever the edges cross into another pixel.
+     */
+    private void assertRenderDoesNotAllocate(String wedgeRendererName, boolean useWedgeTable,
+            boolean smooth) {
+        long stepMs = smooth ? 1000 / 60 : 1000;
+        long timeMs = 0;
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            renderFrame(timeMs, wedgeRendererName, useWedgeTable, smooth);
+            timeMs += stepMs;
+        }
+
+        long before = allocatedBytes();
+        long callBytes = allocatedBytes() - before;
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            renderFrame(timeMs, wedgeRendererName, useWedgeTable, smooth);
+            timeMs += stepMs;
+        }
+        long endBytes = allocatedBytes();
+
+        assertEquals(0, endBytes - startBytes - callBytes);
+    }
+
+    /**
+     * Renders the frame for {@code dialMs} into the handoff's back frame, publishes it and takes
+     * it on the main side, as the render thread and the engine's onDraw() do.
+     */
+    private void renderFrame(long dialMs, String wedgeRendererName, boolean useWedgeTable,
+            boolean smooth) {
+        int dialSecond = (int) (dialMs / 1000 % WedgeGeometry.DIAL_SECONDS);
+        mState.set(dialSecond / 3600, dialSecond / 60 % 60, dialSecond % 60,
+                (int) (dialMs % 1000), smooth, false, false, false, false, mPaints,
+                wedgeRendererName, useWedgeTable, SIZE, SIZE, true, 0);
+        mRenderer.render(mState, mHandoff.beginFrame(mState));
+        mHandoff.publish();
+        mHandoff.acquireLatest();
+    }
+
+    /**
+     * Returns the bytes allocated by this thread so far. The call itself may allocate the same
+     * small amount each time.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,169 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.support.wearable.watchface.WatchFaceService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a real {@link Minimalist} engine through its watch face callbacks.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MinimalistEngineTest {
+
+    private static final int SIZE = 454;
+
+    private CanvasWatchFaceService.Engine mEngine;
+
+    @Before
+    public void setUp() {
+        Minimalist service = Robolectric.setupService(Minimalist.class);
+        mEngine = service.onCreateEngine();
+        mEngine.onCreate(mEngine.getSurfaceHolder());
+        mEngine.onSurfaceChanged(mEngine.getSurfaceHolder(), 0, SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.onDestroy();
+    }
+
+    /**
+     * onDraw() runs once per frame on the main thread, so once the first frames have been
+     * blitted it must not allocate at all.
+     */
+    @Test
+    public void onDrawDoesNotAllocate() {
+        Canvas canvas = new DiscardingCanvas();
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+        for (int i = 0; i < 100; i++) {
+            mEngine.onDraw(canvas, bounds);
+        }
+
+        long before = allocatedBytes();
+        long callBytes = allocatedBytes() - before;
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            mEngine.onDraw(canvas, bounds);
+        }
+        long endBytes = allocatedBytes();
+
+        assertEquals(0, endBytes - startBytes - callBytes);
+    }
+
+    @Test
+    public void interactiveModeUsesAntiAliasedFilledPaints() {
+        PaintSet paints = activePaints();
+        assertEquals("interactive", paints.getName());
+        assertTrue(paints.getWedgePaint().isAntiAlias());
+        assertFalse(paints.isOutline());
+    }
+
+    @Test
+    public void ambientModeSwitchesToAmbientPaintsAndBack() {
+        PaintSet interactive = activePaints();
+
+        mEngine.onAmbientModeChanged(true);
+        PaintSet ambient = activePaints();
+        assertEquals("ambient", ambient.getName());
+        assertTrue(ambient.getWedgePaint().isAntiAlias());
+        assertFalse(ambient.isOutline());
+
+        mEngine.onAmbientModeChanged(false);
+        assertSame(interactive, activePaints());
+    }
+
+    @Test
+    public void lowBitAmbientDrawsWithoutAntiAliasing() {
+        mEngine.onPropertiesChanged(properties(true, false));
+        assertEquals("interactive", activePaints().getName());
+
+        mEngine.onAmbientModeChanged(true);
+        PaintSet paints = activePaints();
+        assertEquals("low-bit ambient", paints.getName());
+        assertFalse(paints.getWedgePaint().isAntiAlias());
+        assertFalse(paints.getTickPaint().isAntiAlias());
+        assertFalse(paints.isOutline());
+    }
+
+    @Test
+    public void burnInProtectionOutlinesTheAmbientWedge() {
+        mEngine.onPropertiesChanged(properties(false, true));
+        mEngine.onAmbientModeChanged(true);
+        PaintSet paints = activePaints();
+        assertEquals("ambient", paints.getName());
+        assertTrue(paints.isOutline());
+        assertTrue(paints.getWedgePaint().isAntiAlias());
+
+        mEngine.onAmbientModeChanged(false);
+        assertFalse(activePaints().isOutline());
+    }
+
+    /**
+     * Properties may arrive while the face is already ambient; the new ambient set must take
+     * over at once rather than on the next mode change.
+     */
+    @Test
+    public void propertiesChangedWhileAmbientReplaceTheActiveSet() {
+        mEngine.onAmbientModeChanged(true);
+        assertEquals("ambient", activePaints().getName());
+
+        mEngine.onPropertiesChanged(properties(true, true));
+        PaintSet paints = activePaints();
+        assertEquals("low-bit ambient", paints.getName());
+        assertFalse(paints.getWedgePaint().isAntiAlias());
+        assertTrue(paints.isOutline());
+    }
+
+    private PaintSet activePaints() {
+        return ReflectionHelpers.getField(mEngine, "mPaints");
+    }
+
+    private static Bundle properties(boolean lowBitAmbient, boolean burnInProtection) {
+        Bundle properties = new Bundle();
+        properties.putBoolean(WatchFaceService.PROPERTY_LOW_BIT_AMBIENT, lowBitAmbient);
+        properties.putBoolean(WatchFaceService.PROPERTY_BURN_IN_PROTECTION, burnInProtection);
+        return properties;
+    }
+
+    /**
+     * Returns the bytes allocated by this thread so far. The call itself may allocate the same
+     * small amount each time.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Ignores the blit, so that only the engine's own allocations are measured and not those
+     * of the shadow canvas recording what is drawn.
+     */
+    private static final class DiscardingCanvas extends Canvas {
+        @Override
+        public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        }
+
+        @Override
+        public void drawColor(int color) {
+        }
+    }
+}
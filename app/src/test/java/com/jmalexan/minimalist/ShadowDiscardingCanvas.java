@@ -0,0 +1,34 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowCanvas;
+
+/**
+ * Canvas shadow that ignores the draw calls the face makes instead of recording them. The stock
+ * shadow keeps a history of every path and bitmap drawn, which would show up in allocation
+ * counts and grow without bound over many frames.
+ */
+@Implements(Canvas.class)
+public class ShadowDiscardingCanvas extends ShadowCanvas {
+
+    @Implementation
+    @Override
+    public void drawColor(int color) {
+    }
+
+    @Implementation
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    }
+
+    @Implementation
+    @Override
+    public void drawPath(Path path, Paint paint) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Path;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowPath;
+
+/**
+ * Path shadow that ignores the points added to it. The stock shadow keeps every point in a list
+ * that {@link Path#rewind()} does not clear, so a path reused across frames would allocate and
+ * grow on every frame.
+ */
+@Implements(Path.class)
+public class ShadowDiscardingPath extends ShadowPath {
+
+    @Implementation
+    @Override
+    public void moveTo(float x, float y) {
+    }
+
+    @Implementation
+    @Override
+    public void lineTo(float x, float y) {
+    }
+}
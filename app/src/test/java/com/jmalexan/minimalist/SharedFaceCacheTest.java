@@ -0,0 +1,184 @@
+package com.jmalexan.minimalist;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which entries of a {@link SharedFaceCache} are kept and which are evicted, what each
+ * trim tier drops, and that what was dropped comes back on the next use. Each test uses a cache
+ * of its own rather than the process-wide one.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SharedFaceCacheTest {
+
+    private static final int SIZE = 454;
+
+    /* Memory of one wedge table: an x and a y float per step. */
+    private static final long TABLE_BYTES = WedgeGeometry.STEPS * 2 * 4;
+
+    private final SharedFaceCache mCache = new SharedFaceCache();
+    private final float[] mVertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+
+    @Test
+    public void releasedEntryIsFoundAgain() {
+        SharedFaceCache.Entry entry = mCache.acquire(SIZE, SIZE, true);
+        mCache.release(entry);
+
+        assertSame(entry, mCache.acquire(SIZE, SIZE, true));
+        assertNotSame(entry, mCache.acquire(SIZE, SIZE, false));
+        assertNotSame(entry, mCache.acquire(SIZE, SIZE - 1, true));
+    }
+
+    @Test
+    public void idleEntriesAreEvictedOldestFirst() {
+        int count = idleEntriesThatFit() + 1;
+        SharedFaceCache.Entry[] entries = new SharedFaceCache.Entry[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = acquireWithTable(SIZE + i);
+            mCache.release(entries[i]);
+        }
+
+        for (int i = 1; i < count; i++) {
+            assertSame("entry " + i, entries[i], mCache.acquire(SIZE + i, SIZE + i, true));
+        }
+        assertNotSame(entries[0], mCache.acquire(SIZE, SIZE, true));
+    }
+
+    /**
+     * Using an idle entry again makes it the most recently used one, so the next eviction takes
+     * the one after it.
+     */
+    @Test
+    public void reusedEntryIsEvictedLast() {
+        int count = idleEntriesThatFit();
+        SharedFaceCache.Entry[] entries = new SharedFaceCache.Entry[count + 1];
+        for (int i = 0; i < count; i++) {
+            entries[i] = acquireWithTable(SIZE + i);
+            mCache.release(entries[i]);
+        }
+        mCache.release(mCache.acquire(SIZE, SIZE, true));
+        entries[count] = acquireWithTable(SIZE + count);
+        mCache.release(entries[count]);
+
+        assertSame(entries[0], mCache.acquire(SIZE, SIZE, true));
+        assertNotSame(entries[1], mCache.acquire(SIZE + 1, SIZE + 1, true));
+    }
+
+    @Test
+    public void referencedEntrySurvivesEviction() {
+        SharedFaceCache.Entry held = acquireWithTable(SIZE);
+        int count = idleEntriesThatFit() + 1;
+        SharedFaceCache.Entry[] entries = new SharedFaceCache.Entry[count + 1];
+        for (int i = 1; i <= count; i++) {
+            entries[i] = acquireWithTable(SIZE + i);
+            mCache.release(entries[i]);
+        }
+
+        for (int i = 2; i <= count; i++) {
+            assertSame("entry " + i, entries[i], mCache.acquire(SIZE + i, SIZE + i, true));
+        }
+        assertSame(held, mCache.acquire(SIZE, SIZE, true));
+        assertNotSame(entries[1], mCache.acquire(SIZE + 1, SIZE + 1, true));
+    }
+
+    @Test
+    public void tablesTierDropsOnlyTheTables() {
+        SharedFaceCache.Entry entry = acquireWithTable(SIZE);
+        float[] tickLines = entry.getTickLines();
+        Bitmap pooled = entry.obtainBitmap(Bitmap.Config.ARGB_8888);
+        entry.recycleBitmap(pooled);
+        long bytes = entry.getByteCount();
+
+        mCache.trim(SharedFaceCache.Tier.TABLES);
+
+        assertEquals(bytes - TABLE_BYTES, entry.getByteCount());
+        assertSame(tickLines, entry.getTickLines());
+        assertFalse(pooled.isRecycled());
+        assertSame(pooled, entry.obtainBitmap(Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void layerBitmapsTierDropsTablesAndPooledBitmaps() {
+        SharedFaceCache.Entry entry = acquireWithTable(SIZE);
+        float[] tickLines = entry.getTickLines();
+        Bitmap pooled = entry.obtainBitmap(Bitmap.Config.ARGB_8888);
+        Bitmap lent = entry.obtainBitmap(Bitmap.Config.ARGB_8888);
+        entry.recycleBitmap(pooled);
+        mCache.release(entry);
+
+        mCache.trim(SharedFaceCache.Tier.LAYER_BITMAPS);
+
+        assertSame(entry, mCache.acquire(SIZE, SIZE, true));
+        assertEquals(tickLines.length * 4, entry.getByteCount());
+        assertSame(tickLines, entry.getTickLines());
+        assertTrue(pooled.isRecycled());
+        assertFalse(lent.isRecycled());
+        assertNotSame(pooled, entry.obtainBitmap(Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void ticksTierDropsEverythingAndTheIdleEntries() {
+        SharedFaceCache.Entry held = acquireWithTable(SIZE);
+        float[] tickLines = held.getTickLines();
+        Bitmap pooled = held.obtainBitmap(Bitmap.Config.ARGB_8888);
+        held.recycleBitmap(pooled);
+        SharedFaceCache.Entry idle = acquireWithTable(SIZE + 1);
+        mCache.release(idle);
+
+        mCache.trim(SharedFaceCache.Tier.TICKS);
+
+        assertEquals(0, held.getByteCount());
+        assertTrue(pooled.isRecycled());
+        assertNotSame(tickLines, held.getTickLines());
+        assertSame(held, mCache.acquire(SIZE, SIZE, true));
+        assertNotSame(idle, mCache.acquire(SIZE + 1, SIZE + 1, true));
+    }
+
+    @Test
+    public void trimmedTablesAndTickLinesComeBackOnTheNextUse() {
+        SharedFaceCache.Entry entry = mCache.acquire(SIZE, SIZE, true);
+        int hourStep = WedgeGeometry.hourStep(10, 10, 30);
+        int minuteStep = WedgeGeometry.minuteStep(10, 30);
+        int vertexCount = entry.computeWedge(hourStep, minuteStep, mVertices);
+        float[] vertices = mVertices.clone();
+        float[] tickLines = entry.getTickLines().clone();
+
+        mCache.trim(SharedFaceCache.Tier.TICKS);
+        assertEquals(0, entry.getByteCount());
+
+        assertEquals(vertexCount, entry.computeWedge(hourStep, minuteStep, mVertices));
+        assertArrayEquals(vertices, mVertices, 0f);
+        assertArrayEquals(tickLines, entry.getTickLines(), 0f);
+        assertEquals(TABLE_BYTES + tickLines.length * 4, entry.getByteCount());
+    }
+
+    /**
+     * Returns how many idle entries holding a wedge table fit in
+     * {@link SharedFaceCache#MAX_IDLE_BYTES}.
+     */
+    private static int idleEntriesThatFit() {
+        SharedFaceCache.Entry entry = new SharedFaceCache().acquire(SIZE, SIZE, true);
+        entry.computeWedge(0, 0, new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2]);
+        return (int) (SharedFaceCache.MAX_IDLE_BYTES / entry.getByteCount());
+    }
+
+    /**
+     * Acquires the entry for a round surface {@code size} pixels across and builds its wedge
+     * table, so that it holds a known amount of memory.
+     */
+    private SharedFaceCache.Entry acquireWithTable(int size) {
+        SharedFaceCache.Entry entry = mCache.acquire(size, size, true);
+        entry.computeWedge(0, 0, mVertices);
+        return entry;
+    }
+}
@@ -0,0 +1,121 @@
+package com.jmalexan.minimalist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks {@link TrigTable} against {@link Math} at every step of several turns, negative ones and
+ * those past a full turn included, and right up to the tangent's asymptotes.
+ */
+public class TrigTableTest {
+
+    /* Steps checked: two turns back from zero and three forward. */
+    private static final int FIRST_STEP = -2 * WedgeGeometry.STEPS;
+    private static final int LAST_STEP = 3 * WedgeGeometry.STEPS;
+
+    /**
+     * How far a sine or cosine may be off: the float rounding of the stored value, plus the
+     * double rounding of the angle reflected into the first quarter.
+     */
+    private static final double SINE_TOLERANCE = 1e-7;
+
+    /**
+     * How far a tangent may be off, for the same reasons, relative to its value where that
+     * exceeds one. The tangent grows without bound towards the asymptotes, so an absolute bound
+     * would not do.
+     */
+    private static final double TANGENT_RELATIVE_TOLERANCE = 2e-7;
+
+    /* Steps in which the tangent is closest to its asymptotes on either side. */
+    private static final int ASYMPTOTE_NEIGHBORHOOD = 100;
+
+    @Test
+    public void sinMatchesMathAtEveryStep() {
+        for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+            assertClose("sin", step, Math.sin(radians(step)), TrigTable.sin(step));
+        }
+    }
+
+    @Test
+    public void cosMatchesMathAtEveryStep() {
+        for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+            assertClose("cos", step, Math.cos(radians(step)), TrigTable.cos(step));
+        }
+    }
+
+    @Test
+    public void tanMatchesMathAtEveryStepButTheAsymptotes() {
+        for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+            if (!isAsymptote(step)) {
+                assertCloseRelative("tan", step, Math.tan(radians(step)), TrigTable.tan(step));
+            }
+        }
+    }
+
+    @Test
+    public void tanIsInfiniteAtTheAsymptotes() {
+        for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+            if (isAsymptote(step)) {
+                assertTrue("tan(" + step + ")", Float.isInfinite(TrigTable.tan(step)));
+            }
+        }
+    }
+
+    /**
+     * Next to an asymptote the tangent is in the thousands and changes sign across it; each side
+     * must follow Math, with the sign of its own side.
+     */
+    @Test
+    public void tanMatchesMathNextToTheAsymptotes() {
+        for (int quarter = -5; quarter <= 5; quarter += 2) {
+            int asymptote = quarter * TrigTable.QUARTER;
+            for (int offset = 1; offset <= ASYMPTOTE_NEIGHBORHOOD; offset++) {
+                int below = asymptote - offset;
+                int above = asymptote + offset;
+                assertTrue("tan(" + below + ") > 0", TrigTable.tan(below) > 0);
+                assertTrue("tan(" + above + ") < 0", TrigTable.tan(above) < 0);
+                assertCloseRelative("tan", below, Math.tan(radians(below)), TrigTable.tan(below));
+                assertCloseRelative("tan", above, Math.tan(radians(above)), TrigTable.tan(above));
+            }
+        }
+    }
+
+    /**
+     * Steps far outside the checked turns, down to the ends of the int range, are reduced
+     * without overflowing.
+     */
+    @Test
+    public void matchesMathAtExtremeSteps() {
+        int[] steps = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1000 * WedgeGeometry.STEPS - 7,
+                1000 * WedgeGeometry.STEPS + 7, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+        for (int step : steps) {
+            assertClose("sin", step, Math.sin(radians(step)), TrigTable.sin(step));
+            assertClose("cos", step, Math.cos(radians(step)), TrigTable.cos(step));
+            assertCloseRelative("tan", step, Math.tan(radians(step)), TrigTable.tan(step));
+        }
+    }
+
+    private static boolean isAsymptote(int step) {
+        return Math.abs(step % (2 * TrigTable.QUARTER)) == TrigTable.QUARTER;
+    }
+
+    private static double radians(int step) {
+        return Math.toRadians(step / (double) WedgeGeometry.STEPS_PER_DEGREE);
+    }
+
+    private static void assertClose(String function, int step, double expected, float actual) {
+        if (Math.abs(actual - expected) > SINE_TOLERANCE) {
+            fail(function + "(" + step + "): expected " + expected + ", got " + actual);
+        }
+    }
+
+    private static void assertCloseRelative(String function, int step, double expected,
+            float actual) {
+        double tolerance = TANGENT_RELATIVE_TOLERANCE * Math.max(1, Math.abs(expected));
+        if (Math.abs(actual - expected) > tolerance) {
+            fail(function + "(" + step + "): expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.jmalexan.minimalist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link WallClock} splits time exactly as {@link Calendar} does, across offset
+ * transitions, in zones whose offset is not a whole hour, before 1970, and when the zone or the
+ * time jumps around.
+ */
+public class WallClockTest {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long YEAR_MS = 365 * DAY_MS;
+
+    /**
+     * Step for walking a whole year: an odd length, so that the samples drift through every
+     * minute, second and millisecond.
+     */
+    private static final long ODD_STEP_MS = TimeUnit.MINUTES.toMillis(7) + 13017;
+
+    /* 1 January of the given year, midnight UTC. */
+    private static final long YEAR_1890_UTC_MS = -2524521600000L;
+    private static final long YEAR_1965_UTC_MS = -157766400000L;
+    private static final long YEAR_2018_UTC_MS = 1514764800000L;
+
+    /**
+     * Zones with daylight saving time in 2018, both hemispheres, including Lord Howe Island,
+     * which only shifts by half an hour.
+     */
+    private static final String[] DST_ZONES = {"America/New_York", "Europe/London",
+            "Australia/Sydney", "Australia/Lord_Howe"};
+
+    /**
+     * Zones whose offset is not a whole number of hours: India at +5:30, Nepal at +5:45, and
+     * Adelaide and the Chatham Islands, which add daylight saving time to +9:30 and +12:45.
+     */
+    private static final String[] ODD_OFFSET_ZONES = {"Asia/Kolkata", "Asia/Kathmandu",
+            "Australia/Adelaide", "Pacific/Chatham"};
+
+    @Test
+    public void matchesCalendarAcrossBothDstTransitions() {
+        for (String id : DST_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            List<Long> transitions = findTransitionHours(zone, YEAR_2018_UTC_MS);
+            assertEquals(id + " transitions in 2018", 2, transitions.size());
+
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            for (long hourMs : transitions) {
+                checkSpan(clock, calendar, hourMs - 2 * HOUR_MS, hourMs + 3 * HOUR_MS,
+                        SECOND_MS);
+            }
+            checkSpan(clock, calendar, YEAR_2018_UTC_MS, YEAR_2018_UTC_MS + YEAR_MS,
+                    ODD_STEP_MS);
+        }
+    }
+
+    @Test
+    public void matchesCalendarInZonesOffByPartsOfAnHour() {
+        for (String id : ODD_OFFSET_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            checkSpan(clock, calendar, YEAR_2018_UTC_MS, YEAR_2018_UTC_MS + DAY_MS, SECOND_MS);
+            checkSpan(clock, calendar, YEAR_2018_UTC_MS, YEAR_2018_UTC_MS + YEAR_MS,
+                    ODD_STEP_MS);
+            for (long hourMs : findTransitionHours(zone, YEAR_2018_UTC_MS)) {
+                checkSpan(clock, calendar, hourMs - 2 * HOUR_MS, hourMs + 3 * HOUR_MS,
+                        SECOND_MS);
+            }
+        }
+    }
+
+    /**
+     * Before 1970 the epoch milliseconds are negative, and zones had offsets of their own, down
+     * to the second in local mean time.
+     */
+    @Test
+    public void matchesCalendarBefore1970() {
+        String[] ids = {"America/New_York", "Asia/Kolkata", "Asia/Kathmandu", "UTC"};
+        for (String id : ids) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            checkSpan(clock, calendar, -DAY_MS, DAY_MS, SECOND_MS + 1);
+            checkSpan(clock, calendar, YEAR_1965_UTC_MS, YEAR_1965_UTC_MS + YEAR_MS,
+                    ODD_STEP_MS);
+            checkSpan(clock, calendar, YEAR_1890_UTC_MS, YEAR_1890_UTC_MS + YEAR_MS,
+                    ODD_STEP_MS);
+        }
+
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        List<Long> transitions = findTransitionHours(newYork, YEAR_1965_UTC_MS);
+        assertEquals("America/New_York transitions in 1965", 2, transitions.size());
+        WallClock clock = new WallClock(newYork);
+        Calendar calendar = Calendar.getInstance(newYork);
+        for (long hourMs : transitions) {
+            checkSpan(clock, calendar, hourMs - 2 * HOUR_MS, hourMs + 3 * HOUR_MS, SECOND_MS);
+        }
+    }
+
+    /**
+     * Replacing the zone must drop the cached offset, even when the time stays within the span
+     * the old offset was valid for.
+     */
+    @Test
+    public void matchesCalendarWhenTheZoneChangesMidRun() {
+        List<String> ids = new ArrayList<>();
+        for (String id : DST_ZONES) {
+            ids.add(id);
+        }
+        for (String id : ODD_OFFSET_ZONES) {
+            ids.add(id);
+        }
+        TimeZone zone = TimeZone.getTimeZone(ids.get(0));
+        WallClock clock = new WallClock(zone);
+        Calendar calendar = Calendar.getInstance(zone);
+        long timeMs = YEAR_2018_UTC_MS;
+        for (int i = 0; i < 100000; i++) {
+            if (i % 100 == 0) {
+                zone = TimeZone.getTimeZone(ids.get(i / 100 % ids.size()));
+                clock.setTimeZone(zone);
+                calendar.setTimeZone(zone);
+            }
+            check(clock, calendar, timeMs);
+            timeMs += ODD_STEP_MS;
+        }
+    }
+
+    /**
+     * Times that jump backwards and forwards, near each other and far apart, must be decomposed
+     * as if each were the first.
+     */
+    @Test
+    public void matchesCalendarWhenTheTimeJumps() {
+        Random random = new Random(2018);
+        for (String id : DST_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            long timeMs = YEAR_2018_UTC_MS;
+            for (int i = 0; i < 50000; i++) {
+                if (random.nextInt(10) == 0) {
+                    /* Anywhere from 1890 to 2150. */
+                    timeMs = YEAR_1890_UTC_MS + (long) (random.nextDouble() * 260 * YEAR_MS);
+                } else {
+                    timeMs += (long) ((random.nextDouble() - 0.5) * 4 * DAY_MS);
+                }
+                check(clock, calendar, timeMs);
+            }
+        }
+    }
+
+    /**
+     * Returns the start of every hour of the year from {@code yearStartMs} in which the zone's
+     * offset changes.
+     */
+    private static List<Long> findTransitionHours(TimeZone zone, long yearStartMs) {
+        List<Long> hours = new ArrayList<>();
+        for (long hourMs = yearStartMs; hourMs < yearStartMs + YEAR_MS; hourMs += HOUR_MS) {
+            if (zone.getOffset(hourMs) != zone.getOffset(hourMs + HOUR_MS)) {
+                hours.add(hourMs);
+            }
+        }
+        return hours;
+    }
+
+    private static void checkSpan(WallClock clock, Calendar calendar, long fromMs, long toMs,
+            long stepMs) {
+        for (long timeMs = fromMs; timeMs < toMs; timeMs += stepMs) {
+            check(clock, calendar, timeMs);
+        }
+    }
+
+    private static void check(WallClock clock, Calendar calendar, long timeMs) {
+        clock.setTimeInMillis(timeMs);
+        calendar.setTimeInMillis(timeMs);
+        if (clock.getHour() != calendar.get(Calendar.HOUR)
+                || clock.getMinute() != calendar.get(Calendar.MINUTE)
+                || clock.getSecond() != calendar.get(Calendar.SECOND)
+                || clock.getMillisecond() != calendar.get(Calendar.MILLISECOND)) {
+            fail(String.format("%s at %d: expected %d:%02d:%02d.%03d, got %d:%02d:%02d.%03d",
+                    calendar.getTimeZone().getID(), timeMs, calendar.get(Calendar.HOUR),
+                    calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND),
+                    calendar.get(Calendar.MILLISECOND), clock.getHour(), clock.getMinute(),
+                    clock.getSecond(), clock.getMillisecond()));
+        }
+    }
+}
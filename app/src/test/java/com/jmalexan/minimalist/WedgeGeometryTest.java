@@ -0,0 +1,295 @@
+package com.jmalexan.minimalist;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link WedgeGeometry}: how border points and wedges fit any surface, and that on square
+ * ones they match the float, degree-based code it replaced.
+ */
+public class WedgeGeometryTest {
+
+    private static final int[] SQUARE_SIZES = {320, 400, 454};
+
+    /**
+     * Rectangles as width, height pairs, including both orientations and a chin-like screen.
+     */
+    private static final int[][] RECTANGLES = {{400, 300}, {300, 400}, {454, 400}, {390, 450},
+            {320, 320}};
+
+    /**
+     * How far off its ray a border point may be, in pixels: float rounding of the table values.
+     */
+    private static final float RAY_TOLERANCE_PX = 1e-3f;
+
+    /**
+     * The corners between the edges must be exactly those the original per-degree scan found,
+     * for every time on the dial.
+     */
+    @Test
+    public void cornersMatchLegacyScanAtEverySecond() {
+        for (int size : SQUARE_SIZES) {
+            WedgeGeometry geometry = new WedgeGeometry();
+            geometry.setSurfaceSize(size, size);
+            float center = size / 2f;
+            float[] expected = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+            float[] actual = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+
+            for (int hour = 0; hour < 12; hour++) {
+                for (int minute = 0; minute < 60; minute++) {
+                    for (int second = 0; second < 60; second++) {
+                        float minutesRotation = minute * 6f + second / 10f;
+                        float hoursRotation = hour * 30 + minutesRotation / 12f;
+                        float newMinRot = minutesRotation;
+                        if (hoursRotation > minutesRotation) {
+                            newMinRot += 360;
+                        }
+                        int hourStep = WedgeGeometry.hourStep(hour, minute, second);
+                        int minuteStep = WedgeGeometry.minuteStep(minute, second);
+                        int toStep = WedgeGeometry.sweepEnd(hourStep, minuteStep);
+                        int actualEnd = geometry.addCornersBetween(hourStep, toStep, actual, 0);
+                        String time = size + " px at " + hour + ":" + minute + ":" + second;
+
+                        int scanEnd = legacyScanCorners(center, center, hoursRotation, newMinRot,
+                                expected);
+                        assertArrayEquals(time, Arrays.copyOf(expected, scanEnd),
+                                Arrays.copyOf(actual, actualEnd), 0);
+
+                        int switchEnd = legacyAddCornersBetween(center, center, hoursRotation,
+                                newMinRot, expected);
+                        assertArrayEquals(time, Arrays.copyOf(expected, switchEnd),
+                                Arrays.copyOf(actual, actualEnd), 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Every border point must lie exactly on one side of the surface and on the ray from the
+     * center at its angle.
+     */
+    @Test
+    public void borderPointsLieOnASideAndOnTheirRay() {
+        float[] point = new float[2];
+        for (int[] size : RECTANGLES) {
+            int width = size[0];
+            int height = size[1];
+            WedgeGeometry geometry = new WedgeGeometry();
+            geometry.setSurfaceSize(width, height);
+            for (int step = 0; step < WedgeGeometry.STEPS; step++) {
+                geometry.borderPoint(step, point, 0);
+                float x = point[0];
+                float y = point[1];
+                String where = width + "x" + height + " at step " + step;
+                assertTrue(where, x == 0 || x == width || y == 0 || y == height);
+
+                double angle = Math.toRadians(WedgeGeometry.toDegrees(step));
+                double dx = x - width / 2f;
+                double dy = y - height / 2f;
+                assertEquals(where, 0, dx * -Math.cos(angle) - dy * Math.sin(angle),
+                        RAY_TOLERANCE_PX);
+                assertTrue(where, dx * Math.sin(angle) - dy * Math.cos(angle) > 0);
+            }
+        }
+    }
+
+    /**
+     * No border point may lie past a corner, not even by a rounding error, on any surface. Rays
+     * just past a corner whose angle is not a whole step must already leave through the next
+     * side.
+     */
+    @Test
+    public void borderPointsNeverLeaveTheSurface() {
+        float[] point = new float[2];
+        for (int[] size : RECTANGLES) {
+            int width = size[0];
+            int height = size[1];
+            WedgeGeometry geometry = new WedgeGeometry();
+            geometry.setSurfaceSize(width, height);
+            for (int step = 0; step < WedgeGeometry.STEPS; step++) {
+                geometry.borderPoint(step, point, 0);
+                String where = width + "x" + height + " at step " + step + ": " + point[0] + ", "
+                        + point[1];
+                assertTrue(where, point[0] >= 0 && point[0] <= width);
+                assertTrue(where, point[1] >= 0 && point[1] <= height);
+            }
+        }
+    }
+
+    /**
+     * A wedge and the wedge between the same edges the other way round must together cover the
+     * whole border shape: the surface, or the polygon around the dial on round screens.
+     */
+    @Test
+    public void complementaryWedgesTileTheSurface() {
+        float[] wedge = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+        for (int[] size : RECTANGLES) {
+            for (boolean round : new boolean[] {false, true}) {
+                int width = size[0];
+                int height = size[1];
+                WedgeGeometry geometry = new WedgeGeometry();
+                geometry.setSurfaceSize(width, height);
+                geometry.setRound(round);
+                double expected;
+                if (round) {
+                    double radius = Math.min(width, height) / 2.0;
+                    expected = WedgeGeometry.ROUND_SIDES * radius * radius
+                            * Math.tan(Math.PI / WedgeGeometry.ROUND_SIDES);
+                } else {
+                    expected = (double) width * height;
+                }
+
+                for (int from = 0; from < WedgeGeometry.STEPS; from += 97) {
+                    for (int to = 0; to < WedgeGeometry.STEPS; to += 1201) {
+                        if (from == to) {
+                            continue;
+                        }
+                        float area = WedgeGeometry.polygonArea(wedge,
+                                geometry.computeWedge(from, to, wedge));
+                        area += WedgeGeometry.polygonArea(wedge,
+                                geometry.computeWedge(to, from, wedge));
+                        assertEquals(width + "x" + height + (round ? " round" : "") + " from "
+                                + from + " to " + to, expected, area, expected * 1e-5);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * On square surfaces the whole wedge must match the one the original eight-way border
+     * chain and per-degree corner scan produced, for every time on the dial.
+     */
+    @Test
+    public void squareWedgesMatchLegacyChainAtEverySecond() {
+        for (int size : SQUARE_SIZES) {
+            WedgeGeometry geometry = new WedgeGeometry();
+            geometry.setSurfaceSize(size, size);
+            float center = size / 2f;
+            float[] expected = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+            float[] actual = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+
+            for (int hour = 0; hour < 12; hour++) {
+                for (int minute = 0; minute < 60; minute++) {
+                    for (int second = 0; second < 60; second++) {
+                        float minutesRotation = minute * 6f + second / 10f;
+                        float hoursRotation = hour * 30 + minutesRotation / 12f;
+                        float newMinRot = minutesRotation;
+                        if (hoursRotation > minutesRotation) {
+                            newMinRot += 360;
+                        }
+                        int offset = add(expected, 0, center, center);
+                        offset = legacyBorderPoint(center, center, hoursRotation, expected,
+                                offset);
+                        float[] corners = new float[8];
+                        int cornerEnd = legacyScanCorners(center, center, hoursRotation,
+                                newMinRot, corners);
+                        System.arraycopy(corners, 0, expected, offset, cornerEnd);
+                        offset += cornerEnd;
+                        offset = legacyBorderPoint(center, center, minutesRotation, expected,
+                                offset);
+
+                        int vertexCount = geometry.computeWedge(
+                                WedgeGeometry.hourStep(hour, minute, second),
+                                WedgeGeometry.minuteStep(minute, second), actual);
+                        String time = size + " px at " + hour + ":" + minute + ":" + second;
+                        assertEquals(time, offset, vertexCount * 2);
+                        assertArrayEquals(time, Arrays.copyOf(expected, offset),
+                                Arrays.copyOf(actual, offset), RAY_TOLERANCE_PX);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The original border intersection: one branch per 45 degrees, each with its own tangent.
+     */
+    private static int legacyBorderPoint(float centerX, float centerY, float angle, float[] out,
+            int offset) {
+        if (angle < 45) {
+            float angleRad = (float) Math.toRadians(angle);
+            return add(out, offset, centerX + ((float) Math.tan(angleRad) * centerY), 0);
+        } else if (angle < 90) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
+            return add(out, offset, centerX * 2, centerY - ((float) Math.tan(angleRad) * centerX));
+        } else if (angle < 135) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
+            return add(out, offset, centerX * 2, centerY + ((float) Math.tan(angleRad) * centerX));
+        } else if (angle < 180) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
+            return add(out, offset, centerX + ((float) Math.tan(angleRad) * centerY), centerY * 2);
+        } else if (angle < 225) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
+            return add(out, offset, centerX - ((float) Math.tan(angleRad) * centerY), centerY * 2);
+        } else if (angle < 270) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
+            return add(out, offset, 0, centerY + ((float) Math.tan(angleRad) * centerX));
+        } else if (angle < 315) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
+            return add(out, offset, 0, centerY - ((float) Math.tan(angleRad) * centerX));
+        } else {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 360));
+            return add(out, offset, centerX - ((float) Math.tan(angleRad) * centerY), 0);
+        }
+    }
+
+    /**
+     * The original corner search: every whole degree past the hour edge, up to the minute edge.
+     */
+    private static int legacyScanCorners(float centerX, float centerY, float hoursRotation,
+            float newMinRot, float[] out) {
+        int offset = 0;
+        int currentDeg = (int) hoursRotation + 1;
+        for (int i = currentDeg; i < newMinRot; i++) {
+            if (i % 360 == 315) {
+                offset = add(out, offset, 0, 0);
+            } else if (i % 360 == 135) {
+                offset = add(out, offset, centerX * 2, centerY * 2);
+            } else if (i % 360 == 45) {
+                offset = add(out, offset, centerX * 2, 0);
+            } else if (i % 360 == 225) {
+                offset = add(out, offset, 0, centerY * 2);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * The first analytic version, which jumped straight to the first corner in whole degrees.
+     */
+    private static int legacyAddCornersBetween(float centerX, float centerY, float fromAngle,
+            float toAngle, float[] out) {
+        int offset = 0;
+        int corner = 45 + 90 * (((int) fromAngle + 45) / 90);
+        for (; corner < toAngle; corner += 90) {
+            switch (corner % 360) {
+                case 45:
+                    offset = add(out, offset, centerX * 2, 0);
+                    break;
+                case 135:
+                    offset = add(out, offset, centerX * 2, centerY * 2);
+                    break;
+                case 225:
+                    offset = add(out, offset, 0, centerY * 2);
+                    break;
+                default:
+                    offset = add(out, offset, 0, 0);
+                    break;
+            }
+        }
+        return offset;
+    }
+
+    private static int add(float[] out, int offset, float x, float y) {
+        out[offset] = x;
+        out[offset + 1] = y;
+        return offset + 2;
+    }
+}
@@ -0,0 +1,164 @@
+package com.jmalexan.minimalist;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per-frame geometry work behind {@code Minimalist.Engine.drawWatchFace}. Every
+ * invocation walks all 43,200 seconds of the 12-hour dial, so the reported time and allocation
+ * figures are per rendered frame.
+ */
+@State(Scope.Thread)
+public class WedgeGeometryBenchmark {
+
+    static final int DIAL_SECONDS = WedgeGeometry.DIAL_SECONDS;
+
+    @Param({"320", "390", "454"})
+    int mSize;
+
+    private final WedgeGeometry mGeometry = new WedgeGeometry();
+    private final WedgeTable mWedgeTable = new WedgeTable(mGeometry);
+    private final int[] mHourSteps = new int[DIAL_SECONDS];
+    private final int[] mMinuteSteps = new int[DIAL_SECONDS];
+    /* The same edges in degrees, for the legacy baseline. */
+    private final float[] mHoursRotations = new float[DIAL_SECONDS];
+    private final float[] mMinutesRotations = new float[DIAL_SECONDS];
+    private final float[] mVertices = new float[WedgeGeometry.MAX_WEDGE_VERTICES * 2];
+    private final int[] mTicks = new int[WedgeGeometry.TICK_COUNT];
+
+    @Setup
+    public void setUp() {
+        mGeometry.setSurfaceSize(mSize, mSize);
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            mHourSteps[second] = WedgeGeometry.hourStepOfDialSecond(second);
+            mMinuteSteps[second] = WedgeGeometry.minuteStepOfDialSecond(second);
+            mHoursRotations[second] = WedgeGeometry.toDegrees(mHourSteps[second]);
+            mMinutesRotations[second] = WedgeGeometry.toDegrees(mMinuteSteps[second]);
+        }
+        mWedgeTable.invalidate();
+        mWedgeTable.computeWedge(0, 0, mVertices);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public float borderIntersection() {
+        float sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            mGeometry.borderPoint(mHourSteps[second], mVertices, 0);
+            mGeometry.borderPoint(mMinuteSteps[second], mVertices, 2);
+            sum += mVertices[0] + mVertices[3];
+        }
+        return sum;
+    }
+
+    /**
+     * Baseline for {@link #borderIntersection}: the eight-way if-chain the geometry used before it
+     * handled non-square surfaces, which is only correct on square ones.
+     */
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public float legacyBorderIntersection() {
+        float centerX = mSize / 2f;
+        float centerY = mSize / 2f;
+        float sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            legacyBorderPoint(centerX, centerY, mHoursRotations[second], mVertices, 0);
+            legacyBorderPoint(centerX, centerY, mMinutesRotations[second], mVertices, 2);
+            sum += mVertices[0] + mVertices[3];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public int cornerInsertion() {
+        int sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            int hourStep = mHourSteps[second];
+            int toStep = WedgeGeometry.sweepEnd(hourStep, mMinuteSteps[second]);
+            sum += mGeometry.addCornersBetween(hourStep, toStep, mVertices, 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public int tickCoverage() {
+        int sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            sum += WedgeGeometry.computeCoveredTicks(mHourSteps[second], mMinuteSteps[second],
+                    mTicks);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public int fullFrame() {
+        int sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            int hourStep = mHourSteps[second];
+            int minuteStep = mMinuteSteps[second];
+            sum += mGeometry.computeWedge(hourStep, minuteStep, mVertices);
+            sum += WedgeGeometry.computeCoveredTicks(hourStep, minuteStep, mTicks);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIAL_SECONDS)
+    public int tableFrame() {
+        int sum = 0;
+        for (int second = 0; second < DIAL_SECONDS; second++) {
+            sum += mWedgeTable.computeWedge(mHourSteps[second], mMinuteSteps[second], mVertices);
+            sum += WedgeGeometry.computeCoveredTicks(mHourSteps[second], mMinuteSteps[second],
+                    mTicks);
+        }
+        return sum;
+    }
+
+    private static void legacyBorderPoint(float centerX, float centerY, float angle, float[] out,
+            int offset) {
+        float x;
+        float y;
+        if (angle < 45) {
+            float angleRad = (float) Math.toRadians(angle);
+            x = centerX + ((float) Math.tan(angleRad) * centerY);
+            y = 0;
+        } else if (angle < 90) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
+            x = centerX * 2;
+            y = centerY - ((float) Math.tan(angleRad) * centerX);
+        } else if (angle < 135) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 90));
+            x = centerX * 2;
+            y = centerY + ((float) Math.tan(angleRad) * centerX);
+        } else if (angle < 180) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
+            x = centerX + ((float) Math.tan(angleRad) * centerY);
+            y = centerY * 2;
+        } else if (angle < 225) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 180));
+            x = centerX - ((float) Math.tan(angleRad) * centerY);
+            y = centerY * 2;
+        } else if (angle < 270) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
+            x = 0;
+            y = centerY + ((float) Math.tan(angleRad) * centerX);
+        } else if (angle < 315) {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 270));
+            x = 0;
+            y = centerY - ((float) Math.tan(angleRad) * centerX);
+        } else {
+            float angleRad = (float) Math.toRadians(Math.abs(angle - 360));
+            x = centerX - ((float) Math.tan(angleRad) * centerY);
+            y = 0;
+        }
+        out[offset] = x;
+        out[offset + 1] = y;
+    }
+}